@@ -0,0 +1,72 @@
+#!/usr/bin/env bash
+#
+# Time from JVM launch to the first answered Twilio webhook, plain jar vs the
+# fast-startup build (AOT + AppCDS + lazy init).
+#
+#   ./mvnw -Pfast-startup package
+#   scripts/startup-bench.sh [iterations]
+#
+# Needs the usual DB / Twilio environment, same as a normal start.
+
+set -euo pipefail
+
+ITERATIONS="${1:-5}"
+PORT="${PORT:-8080}"
+JAR="$(ls target/whatsapp-service-*.jar | grep -v '\.original$' | head -n 1)"
+APP_JAR="target/app/$(basename "$JAR")"
+JSA="target/app/application.jsa"
+
+if [[ ! -f "$APP_JAR" || ! -f "$JSA" ]]; then
+    echo "Missing $APP_JAR or $JSA - build with: ./mvnw -Pfast-startup package" >&2
+    exit 1
+fi
+
+now_ms() {
+    date +%s%3N
+}
+
+# Launches the app with the given java args and prints ms until HELP gets a 200.
+measure() {
+    local start pid code
+    start=$(now_ms)
+    java "$@" --server.port="$PORT" > /dev/null 2>&1 &
+    pid=$!
+
+    while true; do
+        code=$(curl -s -o /dev/null -w '%{http_code}' -X POST \
+            -d 'From=whatsapp:+10000000000&Body=HELP' \
+            "http://localhost:$PORT/twilio/whatsapp" || true)
+        [[ "$code" == "200" ]] && break
+        if ! kill -0 "$pid" 2> /dev/null; then
+            echo "app exited before answering" >&2
+            return 1
+        fi
+        sleep 0.05
+    done
+    echo $(( $(now_ms) - start ))
+
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+}
+
+median() {
+    sort -n | awk '{ v[NR] = $1 } END { print (NR % 2) ? v[(NR + 1) / 2] : int((v[NR / 2] + v[NR / 2 + 1]) / 2) }'
+}
+
+run() {
+    local label="$1"; shift
+    local results=()
+    for ((i = 1; i <= ITERATIONS; i++)); do
+        results+=("$(measure "$@")")
+        echo "$label #$i: ${results[-1]} ms"
+    done
+    echo "$label median: $(printf '%s\n' "${results[@]}" | median) ms"
+    echo
+}
+
+run "baseline" -jar "$JAR"
+run "fast-startup" \
+    -XX:SharedArchiveFile="$JSA" \
+    -Dspring.aot.enabled=true \
+    -Dspring.profiles.active=fast-startup \
+    -jar "$APP_JAR"
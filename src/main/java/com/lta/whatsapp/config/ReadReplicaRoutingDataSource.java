@@ -0,0 +1,29 @@
+package com.lta.whatsapp.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends connections opened inside a {@code @Transactional(readOnly = true)}
+ * method to the replica, and everything else to the primary. Must sit behind a
+ * LazyConnectionDataSourceProxy so the read-only flag is already set when the
+ * physical connection is fetched.
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Target { PRIMARY, REPLICA }
+
+    private final ReplicaLagMonitor lagMonitor;
+
+    public ReadReplicaRoutingDataSource(ReplicaLagMonitor lagMonitor) {
+        this.lagMonitor = lagMonitor;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && lagMonitor.isUsable()) {
+            return Target.REPLICA;
+        }
+        return Target.PRIMARY;
+    }
+}
@@ -0,0 +1,92 @@
+package com.lta.whatsapp.config;
+
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Polls the replica's replication lag. Reads only go to the replica while it is
+ * reachable and no further behind than the configured threshold.
+ */
+public class ReplicaLagMonitor {
+
+    private static final int QUERY_TIMEOUT_SECONDS = 2;
+
+    private final DataSource replica;
+    private final String lagQuery;
+    private final long maxLagSeconds;
+    private final boolean assumeInSync;
+
+    private volatile boolean usable = false;
+    private volatile Long lastLagSeconds = null;
+
+    /**
+     * @param assumeInSync treat an empty lag result as "no lag"; only for a second
+     *                     database that is not a replica at all (local testing).
+     *                     Otherwise an empty result, e.g. replication reset after
+     *                     a failover, makes the replica unusable.
+     */
+    public ReplicaLagMonitor(DataSource replica, String lagQuery, long maxLagSeconds, boolean assumeInSync) {
+        this.replica = replica;
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLagSeconds;
+        this.assumeInSync = assumeInSync;
+    }
+
+    public DataSource getReplica() {
+        return replica;
+    }
+
+    public boolean isUsable() {
+        return usable;
+    }
+
+    public Long getLastLagSeconds() {
+        return lastLagSeconds;
+    }
+
+    // first run right after startup; until then reads go to the primary
+    @Scheduled(fixedDelayString = "${app.datasource.replica.lag-check-ms:5000}")
+    public void check() {
+        boolean wasUsable = usable;
+        try (Connection c = replica.getConnection();
+             Statement st = c.createStatement()) {
+            st.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+            readLag(st);
+        } catch (SQLException e) {
+            lastLagSeconds = null;
+            usable = false;
+        }
+        if (wasUsable != usable) {
+            System.out.println("[REPLICA] " + (usable ? "in use" : "stale or down, reads go to primary")
+                    + " (lag=" + lastLagSeconds + "s)");
+        }
+    }
+
+    private void readLag(Statement st) throws SQLException {
+        try (ResultSet rs = st.executeQuery(lagQuery)) {
+            if (!rs.next()) {
+                // not replicating at all: only fine if told this is a plain second database
+                lastLagSeconds = assumeInSync ? 0L : null;
+            } else {
+                long lag = rs.getLong(lagColumn(rs));
+                // NULL means the replication threads are stopped
+                lastLagSeconds = rs.wasNull() ? null : lag;
+            }
+            usable = lastLagSeconds != null && lastLagSeconds <= maxLagSeconds;
+        }
+    }
+
+    // SHOW REPLICA STATUS has dozens of columns; a custom lag query returns just one
+    private int lagColumn(ResultSet rs) {
+        try {
+            return rs.findColumn("Seconds_Behind_Source");
+        } catch (SQLException e) {
+            return 1;
+        }
+    }
+}
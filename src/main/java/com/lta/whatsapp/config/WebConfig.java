@@ -1,5 +1,6 @@
 package com.lta.whatsapp.config;
 
+import com.lta.whatsapp.security.AdminBulkheadInterceptor;
 import com.lta.whatsapp.security.AdminKeyInterceptor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
@@ -9,13 +10,17 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 public class WebConfig implements WebMvcConfigurer {
 
     private final AdminKeyInterceptor adminKeyInterceptor;
+    private final AdminBulkheadInterceptor adminBulkheadInterceptor;
 
-    public WebConfig(AdminKeyInterceptor adminKeyInterceptor) {
+    public WebConfig(AdminKeyInterceptor adminKeyInterceptor,
+                     AdminBulkheadInterceptor adminBulkheadInterceptor) {
         this.adminKeyInterceptor = adminKeyInterceptor;
+        this.adminBulkheadInterceptor = adminBulkheadInterceptor;
     }
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(adminKeyInterceptor);
+        registry.addInterceptor(adminBulkheadInterceptor).addPathPatterns("/api/whatsapp/**");
     }
 }
@@ -1,14 +1,15 @@
 package com.lta.whatsapp.controller;
 
 import com.lta.whatsapp.service.WhatsappService;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 @RestController
+@Lazy(false)
 @RequestMapping("/twilio")
 public class TwilioWebhookController {
 
@@ -47,8 +48,21 @@ public class TwilioWebhookController {
         String text = body.trim();
         String upper = text.toUpperCase();
 
+        // STOP / START (opt-out, opt-in)
+        if (upper.equals("STOP")) {
+            whatsappService.optOut(senderFinal);
+            return twiml("✅ You will no longer receive alerts. Send START to opt back in.");
+        }
+        if (upper.equals("START")) {
+            whatsappService.optIn(senderFinal);
+            return twiml("✅ Welcome back. Send *SUB LINE_CODE* to pick your lines (e.g. SUB NEL).");
+        }
+
         // SUB ...
         if (upper.startsWith("SUB")) {
+            if (whatsappService.isSuppressed(senderFinal)) {
+                return twiml("You opted out of alerts. Send START first, then SUB again.");
+            }
             List<String> parts = Arrays.stream(upper.split("\\s+")).toList();
             if (parts.size() < 2) {
                 return twiml("Tell me which line. Example: SUB NEL");
@@ -83,12 +97,7 @@ public class TwilioWebhookController {
 
         // LINES
         if (upper.startsWith("LINES")) {
-            Map<String, Set<String>> all = whatsappService.getAllSubscriptions();
-            List<String> myLines = all.entrySet().stream()
-                    .filter(e -> e.getValue().contains(senderFinal))
-                    .map(Map.Entry::getKey)
-                    .sorted()
-                    .collect(Collectors.toList());
+            List<String> myLines = whatsappService.getLinesForPhone(senderFinal);
 
             if (myLines.isEmpty()) {
                 return twiml("You are not subscribed to any lines. Try: SUB NEL");
@@ -109,6 +118,8 @@ public class TwilioWebhookController {
 
                 • Send *UNSUB LINE_CODE* to unsubscribe
 
+                • Send *STOP* to stop all alerts, *START* to opt back in
+
                 _LINE_CODEs_: NEL, NSL, EWL, CCL, DTL, TEL, BPLRT, SPLRT
 
                 Tip: Try *SUB NEL* to get started.
@@ -1,15 +1,34 @@
 package com.lta.whatsapp.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lta.whatsapp.model.WhatsappAudit;
+import com.lta.whatsapp.model.WhatsappAuditRollup;
+import com.lta.whatsapp.service.BroadcastAdmission;
+import com.lta.whatsapp.service.BroadcastTrace;
+import com.lta.whatsapp.service.BroadcastTraceStore;
+import com.lta.whatsapp.service.MessageEncoding;
 import com.lta.whatsapp.service.WhatsappService;
-import com.lta.whatsapp.repo.WhatsappAuditRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -19,12 +38,26 @@ public class WhatsappController {
 
     private static final Logger log = LoggerFactory.getLogger(WhatsappController.class);
 
-    private final WhatsappService whatsappService;
-    private final WhatsappAuditRepository auditRepo;
+    private static final String TEST_RECIPIENT = "whatsapp:+6584685816";
+    private static final String NDJSON = "application/x-ndjson";
 
-    public WhatsappController(WhatsappService whatsappService, WhatsappAuditRepository auditRepo) {
+    private final WhatsappService whatsappService;
+    private final ObjectMapper objectMapper;
+    private final BroadcastAdmission admission;
+    private final BroadcastTraceStore traceStore;
+
+    // squeeze alerts into a single GSM-7 segment unless the request says otherwise
+    @Value("${app.message.compact:false}")
+    private boolean compactByDefault;
+
+    public WhatsappController(WhatsappService whatsappService,
+                              ObjectMapper objectMapper,
+                              BroadcastAdmission admission,
+                              BroadcastTraceStore traceStore) {
         this.whatsappService = whatsappService;
-        this.auditRepo = auditRepo;
+        this.objectMapper = objectMapper;
+        this.admission = admission;
+        this.traceStore = traceStore;
     }
 
     // =============== 1) send alert (auto-detect line) ===============
@@ -56,49 +89,7 @@ public class WhatsappController {
                 test = b;
             }
 
-            // choose recipients
-            List<String> recipients;
-            if (test) {
-                recipients = List.of("whatsapp:+6584685816"); // your own test number
-            } else {
-                recipients = whatsappService.getSubscribersForLine(line);
-            }
-
-            if (recipients == null || recipients.isEmpty()) {
-                return ResponseEntity.status(404).body(Map.of(
-                        "error", "No recipients/subscribers configured for line " + line
-                ));
-            }
-
-            // format
-            String formatted = "🚇 " + line + " Service Update\n" + message;
-
-            // send
-            whatsappService.sendAlert(formatted, recipients);
-
-            // log
-            log.info("[{}] SENT {} line={} recipients={} msg={}",
-                    OffsetDateTime.now(),
-                    (test ? "TEST" : "REAL"),
-                    line,
-                    recipients,
-                    message);
-
-            // audit
-            whatsappService.addAuditEntry(
-                    OffsetDateTime.now().toString(),
-                    line,
-                    message,
-                    recipients,
-                    test
-            );
-
-            return ResponseEntity.ok(Map.of(
-                    "status", "sent",
-                    "line", line,
-                    "test", test,
-                    "recipients", recipients
-            ));
+            return deliver(line, message, test, compactFlag(payload));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of(
                     "status", "failed",
@@ -143,10 +134,37 @@ public class WhatsappController {
         ));
     }
 
-    // =============== 4) list all subscriptions (for debugging) ===============
-    @GetMapping("/subscriptions")
-    public ResponseEntity<?> listSubscriptions() {
-        return ResponseEntity.ok(whatsappService.getAllSubscriptions());
+    // =============== 4) list all subscriptions (NDJSON, streamed from a DB cursor) ===============
+    @GetMapping(value = "/subscriptions", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> listSubscriptions(
+            @RequestParam(value = "line", required = false) String line,
+            @RequestParam(value = "pageToken", required = false) String pageToken,
+            @RequestParam(value = "limit", defaultValue = "0") int limit
+    ) {
+        long afterId = decodePageToken(pageToken);
+
+        StreamingResponseBody body = out -> {
+            BufferedOutputStream buf = new BufferedOutputStream(out, 64 * 1024);
+            Long next = whatsappService.streamSubscriptions(line, afterId, limit, row -> writeLine(buf, row));
+            if (next != null) {
+                // last line carries the token for the next page
+                writeLine(buf, Map.of("nextPageToken", encodePageToken(next)));
+            }
+            buf.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+
+    // =============== 4b) subscriber counts per line ===============
+    @GetMapping("/subscriptions/counts")
+    public ResponseEntity<?> subscriptionCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (var c : whatsappService.getSubscriptionCounts()) {
+            counts.put(c.getLineCode(), c.getSubscribers());
+        }
+        return ResponseEntity.ok(counts);
     }
 
     // =============== 5) NEW: force a line ===============
@@ -168,46 +186,7 @@ public class WhatsappController {
                 test = b;
             }
 
-            String lineUpper = line.toUpperCase();
-
-            List<String> recipients;
-            if (test) {
-                recipients = List.of("whatsapp:+6584685816");
-            } else {
-                recipients = whatsappService.getSubscribersForLine(lineUpper);
-            }
-
-            if (recipients == null || recipients.isEmpty()) {
-                return ResponseEntity.status(404).body(Map.of(
-                        "error", "No recipients/subscribers configured for line " + lineUpper
-                ));
-            }
-
-            String formatted = "🚇 " + lineUpper + " Service Update\n" + message;
-
-            whatsappService.sendAlert(formatted, recipients);
-
-            log.info("[{}] SENT {} line={} recipients={} msg={}",
-                    OffsetDateTime.now(),
-                    (test ? "TEST" : "REAL"),
-                    lineUpper,
-                    recipients,
-                    message);
-
-            whatsappService.addAuditEntry(
-                    OffsetDateTime.now().toString(),
-                    lineUpper,
-                    message,
-                    recipients,
-                    test
-            );
-
-            return ResponseEntity.ok(Map.of(
-                    "status", "sent",
-                    "line", lineUpper,
-                    "test", test,
-                    "recipients", recipients
-            ));
+            return deliver(line.toUpperCase(), message, test, compactFlag(payload));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of(
                     "status", "failed",
@@ -220,8 +199,227 @@ public class WhatsappController {
     @GetMapping("/audit/last7d")
     public ResponseEntity<?> getLast7DaysAudit() {
         LocalDateTime sevenDaysAgo = LocalDateTime.now().minusDays(7);
-        List<WhatsappAudit> logs = auditRepo.findByCreatedAtAfterOrderByCreatedAtDesc(sevenDaysAgo);
+        List<WhatsappAudit> logs = whatsappService.getAuditSince(sevenDaysAgo);
         return ResponseEntity.ok(logs);
     }
 
+    // =============== 7) sender pool status ===============
+    @GetMapping("/senders")
+    public ResponseEntity<?> listSenders() {
+        return ResponseEntity.ok(whatsappService.getSenderStatus());
+    }
+
+    // =============== 8) Twilio transport health (circuit breaker) ===============
+    @GetMapping("/health/twilio")
+    public ResponseEntity<?> twilioHealth() {
+        return ResponseEntity.status(whatsappService.isTransportOpen() ? 503 : 200)
+                .body(whatsappService.getTransportHealth());
+    }
+
+    // =============== 9) recent broadcast traces ===============
+    @GetMapping("/traces")
+    public ResponseEntity<?> listTraces() {
+        return ResponseEntity.ok(traceStore.list().stream().map(BroadcastTrace::toMap).toList());
+    }
+
+    @GetMapping("/traces/{traceId}")
+    public ResponseEntity<?> getTrace(@PathVariable("traceId") String traceId) {
+        return traceStore.find(traceId)
+                .<ResponseEntity<?>>map(tr -> ResponseEntity.ok(tr.toMap()))
+                .orElseGet(() -> ResponseEntity.status(404).body(Map.of("error", "unknown trace " + traceId)));
+    }
+
+    // =============== 10) stats from pre-aggregated rollups ===============
+    @GetMapping("/stats/lines")
+    public ResponseEntity<?> lineStats(@RequestParam(value = "days", defaultValue = "7") int days) {
+        LocalDateTime from = LocalDate.now().minusDays(days - 1L).atStartOfDay();
+        return ResponseEntity.ok(whatsappService.getLineTotals(from));
+    }
+
+    @GetMapping("/stats/rollups")
+    public ResponseEntity<?> rollups(
+            @RequestParam(value = "granularity", defaultValue = "DAY") String granularity,
+            @RequestParam(value = "days", defaultValue = "7") int days
+    ) {
+        String g = granularity.toUpperCase();
+        if (!g.equals(WhatsappAuditRollup.HOUR) && !g.equals(WhatsappAuditRollup.DAY)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "granularity must be HOUR or DAY"));
+        }
+        LocalDateTime from = LocalDate.now().minusDays(days - 1L).atStartOfDay();
+        return ResponseEntity.ok(whatsappService.getRollups(g, from));
+    }
+
+    // =============== 11) per-recipient delivery results (NDJSON, from the local delivery log) ===============
+    @GetMapping(value = "/broadcasts/{broadcastId}/deliveries", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> broadcastDeliveries(@PathVariable("broadcastId") long broadcastId) {
+        // each node only logs its own broadcasts; an empty 200 here would look like "nothing was sent"
+        int owner = whatsappService.remoteOwnerOf(broadcastId);
+        if (owner >= 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND,
+                    "broadcast " + broadcastId + " was sent by node " + owner + "; ask that instance");
+        }
+        StreamingResponseBody body = out -> {
+            BufferedOutputStream buf = new BufferedOutputStream(out, 64 * 1024);
+            whatsappService.streamDeliveries(broadcastId, rec -> writeLine(buf, rec));
+            buf.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+
+    /* =================== shared send path =================== */
+
+    private ResponseEntity<?> deliver(String line, String message, boolean test, boolean compact) {
+        BroadcastAdmission.Outcome admitted = admission.enter();
+        if (admitted != BroadcastAdmission.Outcome.ADMITTED) {
+            boolean queueFull = admitted == BroadcastAdmission.Outcome.QUEUE_FULL;
+            return ResponseEntity.status(queueFull ? 429 : 503)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(admission.getRetryAfterSeconds()))
+                    .body(Map.of(
+                            "status", "rejected",
+                            "reason", queueFull ? "too many pending broadcasts" : "no broadcast slot available"
+                    ));
+        }
+        try {
+            return deliverAdmitted(line, message, test, compact);
+        } finally {
+            admission.exit();
+        }
+    }
+
+    private ResponseEntity<?> deliverAdmitted(String line, String message, boolean test, boolean compact) {
+        BroadcastTrace trace = new BroadcastTrace(line, test);
+        try {
+            return deliverTraced(trace, line, message, test, compact);
+        } catch (RuntimeException e) {
+            trace.fail(e);
+            throw e;
+        } finally {
+            traceStore.add(trace.finish());
+        }
+    }
+
+    private ResponseEntity<?> deliverTraced(BroadcastTrace trace, String line, String message,
+                                            boolean test, boolean compact) {
+        // choose recipients
+        long t = System.nanoTime();
+        List<String> recipients;
+        if (test) {
+            recipients = List.of(TEST_RECIPIENT); // your own test number
+        } else {
+            recipients = whatsappService.getSubscribersForLine(line);
+        }
+        trace.span("lookup", t);
+
+        if (recipients == null || recipients.isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of(
+                    "error", "No recipients/subscribers configured for line " + line,
+                    "traceId", trace.getTraceId()
+            ));
+        }
+
+        // format once per broadcast; the encoding decides segments for every recipient
+        t = System.nanoTime();
+        String formatted = "🚇 " + line + " Service Update\n" + message;
+        if (compact) {
+            formatted = MessageEncoding.compact(formatted);
+        }
+        MessageEncoding.Info encoding = MessageEncoding.analyze(formatted);
+        trace.span("encode", t);
+
+        // send (recipients are parked instead if the Twilio circuit is open)
+        t = System.nanoTime();
+        long broadcastId = whatsappService.newBroadcastId();
+        trace.setBroadcastId(broadcastId);
+        WhatsappService.SendResult sent = whatsappService.sendAlert(formatted, recipients, broadcastId, trace::recordSend);
+        trace.span("send", t);
+
+        // log
+        log.info("[{}] SENT {} line={} broadcast={} recipients={} encoding={} segments={} trace={} msg={}",
+                OffsetDateTime.now(),
+                (test ? "TEST" : "REAL"),
+                line,
+                broadcastId,
+                recipients,
+                encoding.encoding(),
+                encoding.segments(),
+                trace.getTraceId(),
+                message);
+
+        // audit
+        t = System.nanoTime();
+        whatsappService.addAuditEntry(
+                OffsetDateTime.now().toString(),
+                line,
+                message,
+                recipients,
+                test,
+                encoding,
+                broadcastId
+        );
+        trace.span("audit", t);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        String status;
+        if (sent.lost() == recipients.size()) status = "failed";
+        else if (sent.parked() > 0) status = "parked";
+        else if (sent.lost() > 0) status = "partial";
+        else status = "sent";
+        body.put("status", status);
+        body.put("broadcastId", broadcastId);
+        body.put("line", line);
+        body.put("test", test);
+        body.put("recipients", recipients);
+        body.put("encoding", encoding.encoding());
+        body.put("segments", encoding.segments());
+        body.put("totalSegments", (long) encoding.segments() * recipients.size());
+        body.put("compacted", compact);
+        body.put("trace", trace.finish().toMap());
+        if (sent.lost() > 0) {
+            // every sender failed for them, or Twilio is down and the parked queue is full
+            body.put("failed", sent.lost());
+        }
+        if (sent.parked() > 0) {
+            body.put("parked", sent.parked());
+        }
+        if (sent.lost() == recipients.size()) {
+            return ResponseEntity.status(503).body(body);
+        }
+        if (sent.parked() > 0) {
+            // accepted, but part of it goes out only once Twilio recovers
+            return ResponseEntity.status(202).body(body);
+        }
+        return ResponseEntity.ok(body);
+    }
+
+    private void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(value));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // page tokens are opaque to clients; inside it is just the last id served
+    private String encodePageToken(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long decodePageToken(String token) {
+        if (token == null || token.isBlank()) return 0L;
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid pageToken");
+        }
+    }
+
+    private boolean compactFlag(Map<String, Object> payload) {
+        Object val = payload.get("compact");
+        return val instanceof Boolean b ? b : compactByDefault;
+    }
+
 }
@@ -0,0 +1,248 @@
+package com.lta.whatsapp.delivery;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Local append-only log of per-recipient delivery outcomes, kept out of MySQL.
+ *
+ * Records go into fixed-size memory-mapped segment files; when one fills up a
+ * new one is rolled. Sealed segments are compacted (one record per broadcast
+ * and recipient, sorted by broadcast id, so the sparse index gets tight) and
+ * dropped whole once they pass retention.
+ *
+ * Existing segments are mapped and re-indexed on a background thread, so a
+ * large log does not hold up startup; the first append or scan waits for it.
+ */
+@Component
+@Lazy(false)
+public class DeliveryLog {
+
+    private static final String SUFFIX = ".seg";
+
+    // broadcast id = node id (10 bits) << 40 | per-node counter (40 bits); stays under
+    // 2^53 so JavaScript clients read it exactly
+    static final int NODE_BITS = 10;
+    static final int COUNTER_BITS = 40;
+    static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+
+    private final Path dir;
+    private final int segmentRecords;
+    private final long retentionDays;
+    private final int configuredNodeId;
+    private long nodePrefix; // set by recovery: a host name lookup can be slow
+
+    // oldest first; readers iterate a snapshot, the writer only touches the last one
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final AtomicLong broadcastIds = new AtomicLong();
+    private final Object writeLock = new Object();
+
+    private final CompletableFuture<Void> recovered;
+
+    public DeliveryLog(
+            @Value("${app.delivery-log.dir:./data/delivery-log}") String dir,
+            @Value("${app.delivery-log.segment-records:1000000}") int segmentRecords,
+            @Value("${app.delivery-log.retention-days:30}") long retentionDays,
+            @Value("${app.node-id:-1}") int nodeId
+    ) throws IOException {
+        this.dir = Paths.get(dir);
+        this.segmentRecords = segmentRecords;
+        this.retentionDays = retentionDays;
+        this.configuredNodeId = nodeId;
+
+        Files.createDirectories(this.dir);
+        this.recovered = CompletableFuture.runAsync(this::recover,
+                r -> Thread.ofVirtual().name("delivery-log-recovery").start(r));
+    }
+
+    private void recover() {
+        long started = System.nanoTime();
+        nodePrefix = (long) (configuredNodeId >= 0 ? configuredNodeId : defaultNodeId()) << COUNTER_BITS;
+        try (Stream<Path> files = Files.list(this.dir)) {
+            List<Path> existing = files
+                    .filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList();
+            for (Path p : existing) {
+                segments.add(Segment.open(sequenceOf(p), p, segmentRecords));
+            }
+        } catch (IOException e) {
+            System.out.println("[DELIVERY-LOG] recovery failed in " + dir.toAbsolutePath() + ": " + e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+        // the counter starts from the clock (seconds << 8) so it moves forward even if the
+        // data directory was wiped, and from the last local id if that is further ahead
+        long counter = (System.currentTimeMillis() / 1000) << 8;
+        for (Segment s : segments) {
+            long id = s.maxBroadcastId();
+            if ((id & ~COUNTER_MASK) == nodePrefix) counter = Math.max(counter, id & COUNTER_MASK);
+        }
+        broadcastIds.set(counter);
+
+        System.out.println("[DELIVERY-LOG] " + segments.size() + " segments in " + this.dir.toAbsolutePath()
+                + ", node " + (nodePrefix >>> COUNTER_BITS)
+                + " (" + (System.nanoTime() - started) / 1_000_000 + " ms)");
+    }
+
+    // segments and the id counter are only valid once recovery has finished
+    private void awaitRecovery() {
+        try {
+            recovered.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+    }
+
+    /** Id for a new broadcast, unique across instances; records are looked up by it. */
+    public long nextBroadcastId() {
+        awaitRecovery();
+        return nodePrefix | broadcastIds.incrementAndGet();
+    }
+
+    /** This instance's node id; only broadcasts carrying it have records here. */
+    public int nodeId() {
+        awaitRecovery();
+        return (int) (nodePrefix >>> COUNTER_BITS);
+    }
+
+    /** The node a broadcast id was issued by. */
+    public static int nodeOf(long broadcastId) {
+        return (int) (broadcastId >>> COUNTER_BITS);
+    }
+
+    public void append(DeliveryRecord record) {
+        awaitRecovery();
+        synchronized (writeLock) {
+            Segment active = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (active == null || active.isFull()) {
+                active = roll(active);
+            }
+            active.append(record);
+        }
+    }
+
+    /** Streams every recorded outcome for one broadcast, oldest segment first. */
+    public void scan(long broadcastId, Consumer<DeliveryRecord> sink) {
+        awaitRecovery();
+        for (Segment s : segments) {
+            s.scan(broadcastId, sink);
+        }
+    }
+
+    /* =================== MAINTENANCE =================== */
+
+    @Scheduled(fixedDelayString = "${app.delivery-log.maintenance-interval-ms:3600000}")
+    public void maintain() {
+        awaitRecovery();
+        Instant cutoff = Instant.now().minus(retentionDays, ChronoUnit.DAYS);
+        for (Segment s : sealed()) {
+            if (s.maxTimestamp() < cutoff.toEpochMilli()) {
+                segments.remove(s);
+                delete(s.path);
+                System.out.println("[DELIVERY-LOG] dropped " + s.path.getFileName());
+            } else if (!s.compacted) {
+                compact(s);
+            }
+        }
+    }
+
+    /**
+     * Rewrites a sealed segment keeping only the last record per
+     * (broadcast, recipient) - retries and parked-then-sent leave several -
+     * ordered by broadcast id. Records are copied as raw bytes; the new file
+     * replaces the old one atomically.
+     */
+    void compact(Segment s) {
+        int[] kept = s.compactionOrder();
+
+        Path tmp = s.path.resolveSibling(s.path.getFileName() + ".compact");
+        try {
+            Files.deleteIfExists(tmp);
+            Segment out = Segment.open(s.sequence, tmp, Math.max(1, kept.length));
+            for (int i : kept) out.appendRaw(s, i);
+            out.force();
+            Files.move(tmp, s.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            Segment reopened = Segment.open(s.sequence, s.path, segmentRecords);
+            reopened.compacted = true;
+            segments.set(segments.indexOf(s), reopened);
+            System.out.println("[DELIVERY-LOG] compacted " + s.path.getFileName()
+                    + " " + s.count() + " -> " + kept.length + " records");
+        } catch (IOException e) {
+            System.out.println("[DELIVERY-LOG] compaction failed for " + s.path.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flush() {
+        if (!recovered.isDone()) return; // nothing has been written yet
+        for (Segment s : segments) s.force();
+    }
+
+    /* =================== HELPERS =================== */
+
+    // every segment except the one being written
+    private List<Segment> sealed() {
+        List<Segment> snapshot = new ArrayList<>(segments);
+        if (!snapshot.isEmpty() && !snapshot.get(snapshot.size() - 1).isFull()) {
+            snapshot.remove(snapshot.size() - 1);
+        }
+        return snapshot;
+    }
+
+    private Segment roll(Segment previous) {
+        if (previous != null) previous.force();
+        long seq = previous == null ? 1 : previous.sequence + 1;
+        Path p = dir.resolve(String.format("%020d%s", seq, SUFFIX));
+        try {
+            Segment s = Segment.open(seq, p, segmentRecords);
+            segments.add(s);
+            return s;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // app.node-id should be set per instance; without it, hash the host name
+    private static int defaultNodeId() {
+        String host = System.getenv("HOSTNAME");
+        if (host == null || host.isBlank()) {
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (IOException e) {
+                host = "localhost";
+            }
+        }
+        return (host.hashCode() & Integer.MAX_VALUE) % (1 << NODE_BITS);
+    }
+
+    private static long sequenceOf(Path p) {
+        String name = p.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static void delete(Path p) {
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException e) {
+            System.out.println("[DELIVERY-LOG] could not delete " + p + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.lta.whatsapp.delivery;
+
+import java.time.Instant;
+
+/** Outcome of one Twilio call for one recipient of one broadcast. */
+public record DeliveryRecord(
+        long broadcastId,
+        String phone,
+        Instant at,
+        Status status,
+        int httpStatus,
+        int errorCode,
+        int latencyMicros,
+        String sid
+) {
+
+    public enum Status { SENT, REJECTED, FAILED, PARKED }
+
+    /* =================== PHONE PACKING =================== */
+
+    // E.164 has at most 15 digits, so the number fits in a long
+    static long packPhone(String phone) {
+        long n = 0;
+        int digits = 0;
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > 18) return 0;
+                n = n * 10 + (c - '0');
+            }
+        }
+        return n;
+    }
+
+    static String unpackPhone(long packed) {
+        return "whatsapp:+" + packed;
+    }
+}
@@ -0,0 +1,280 @@
+package com.lta.whatsapp.delivery;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Consumer;
+
+/**
+ * One memory-mapped file of fixed-size delivery records.
+ *
+ * Record layout (72 bytes, big-endian):
+ * <pre>
+ *  0  long  broadcastId (0 = unused slot)
+ *  8  long  phone, digits packed
+ * 16  long  epoch millis
+ * 24  int   latency micros
+ * 28  short http status
+ * 30  byte  status ordinal
+ * 31  byte  sid length
+ * 32  int   Twilio error code
+ * 36  34b   sid (ASCII)
+ * 70  2b    padding
+ * </pre>
+ * A sparse block index (min/max broadcast id per block of records) lets a
+ * lookup skip every block that cannot hold the broadcast it wants.
+ */
+final class Segment {
+
+    static final int RECORD_SIZE = 72;
+    static final int BLOCK_RECORDS = 256;
+    private static final int SID_MAX = 34;
+
+    private static final DeliveryRecord.Status[] STATUSES = DeliveryRecord.Status.values();
+
+    final long sequence;
+    final Path path;
+    final int capacity;
+
+    private final MappedByteBuffer buf;
+
+    // records [0, count) are fully written; readers never look past it
+    private volatile int count;
+
+    // sparse index: blockMin[i] / blockMax[i] cover records [i * BLOCK_RECORDS, (i + 1) * BLOCK_RECORDS)
+    private final long[] blockMin;
+    private final long[] blockMax;
+
+    private volatile long minBroadcastId = Long.MAX_VALUE;
+    private volatile long maxBroadcastId = 0;
+    private volatile long maxTimestamp = 0;
+
+    volatile boolean compacted;
+
+    private Segment(long sequence, Path path, int capacity, MappedByteBuffer buf) {
+        this.sequence = sequence;
+        this.path = path;
+        this.capacity = capacity;
+        this.buf = buf;
+        int blocks = (capacity + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+        this.blockMin = new long[blocks];
+        this.blockMax = new long[blocks];
+        Arrays.fill(blockMin, Long.MAX_VALUE);
+    }
+
+    /** Maps (creating if needed) a segment file and rebuilds its index from the records in it. */
+    static Segment open(long sequence, Path path, int capacity) throws IOException {
+        try (FileChannel ch = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // an existing (e.g. compacted) file keeps its own size
+            long size = ch.size() > 0 ? ch.size() : (long) capacity * RECORD_SIZE;
+            int cap = (int) (size / RECORD_SIZE);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, (long) cap * RECORD_SIZE);
+            Segment s = new Segment(sequence, path, cap, buf);
+            s.recover();
+            return s;
+        }
+    }
+
+    private void recover() {
+        int n = 0;
+        while (n < capacity && buf.getLong(n * RECORD_SIZE) != 0) {
+            index(n, buf.getLong(n * RECORD_SIZE), buf.getLong(n * RECORD_SIZE + 16));
+            n++;
+        }
+        count = n;
+    }
+
+    boolean isFull() {
+        return count >= capacity;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long maxBroadcastId() {
+        return maxBroadcastId;
+    }
+
+    long maxTimestamp() {
+        return maxTimestamp;
+    }
+
+    /** Caller holds the log's write lock. */
+    void append(DeliveryRecord r) {
+        int n = count;
+        int off = n * RECORD_SIZE;
+        long phone = DeliveryRecord.packPhone(r.phone());
+        long at = r.at().toEpochMilli();
+
+        buf.putLong(off + 8, phone);
+        buf.putLong(off + 16, at);
+        buf.putInt(off + 24, r.latencyMicros());
+        buf.putShort(off + 28, (short) r.httpStatus());
+        buf.put(off + 30, (byte) r.status().ordinal());
+        byte[] sid = r.sid() == null ? new byte[0] : r.sid().getBytes(StandardCharsets.US_ASCII);
+        int sidLen = Math.min(sid.length, SID_MAX);
+        buf.put(off + 31, (byte) sidLen);
+        buf.putInt(off + 32, r.errorCode());
+        buf.put(off + 36, sid, 0, sidLen);
+        // broadcast id last: a non-zero id marks the slot as complete on recovery
+        buf.putLong(off, r.broadcastId());
+
+        index(n, r.broadcastId(), at);
+        count = n + 1;
+    }
+
+    private void index(int n, long broadcastId, long at) {
+        int block = n / BLOCK_RECORDS;
+        blockMin[block] = Math.min(blockMin[block], broadcastId);
+        blockMax[block] = Math.max(blockMax[block], broadcastId);
+        minBroadcastId = Math.min(minBroadcastId, broadcastId);
+        maxBroadcastId = Math.max(maxBroadcastId, broadcastId);
+        maxTimestamp = Math.max(maxTimestamp, at);
+    }
+
+    /** Emits every record of this broadcast, in write order. */
+    void scan(long broadcastId, Consumer<DeliveryRecord> sink) {
+        int n = count;
+        if (n == 0 || broadcastId < minBroadcastId || broadcastId > maxBroadcastId) return;
+
+        int blocks = (n + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+        for (int b = 0; b < blocks; b++) {
+            if (!mayHold(b, broadcastId)) continue;
+            int end = Math.min(n, (b + 1) * BLOCK_RECORDS);
+            for (int i = b * BLOCK_RECORDS; i < end; i++) {
+                if (buf.getLong(i * RECORD_SIZE) == broadcastId) sink.accept(read(i));
+            }
+        }
+    }
+
+    /** How many blocks a scan for this broadcast has to read. */
+    int blocksToScan(long broadcastId) {
+        int n = count;
+        if (n == 0 || broadcastId < minBroadcastId || broadcastId > maxBroadcastId) return 0;
+        int blocks = (n + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+        int read = 0;
+        for (int b = 0; b < blocks; b++) {
+            if (mayHold(b, broadcastId)) read++;
+        }
+        return read;
+    }
+
+    private boolean mayHold(int block, long broadcastId) {
+        return broadcastId >= blockMin[block] && broadcastId <= blockMax[block];
+    }
+
+    /* =================== COMPACTION =================== */
+
+    /**
+     * Positions of the records a compaction keeps: the last write per
+     * (broadcast, phone), ordered by broadcast id and then write order. Works on
+     * the packed keys in the mapping - a few primitive arrays, no record objects.
+     */
+    int[] compactionOrder() {
+        int n = count;
+
+        // open-addressing table of position + 1 keyed by (broadcast, phone); a later write supersedes
+        int size = Integer.highestOneBit(Math.max(1, n)) << 2;
+        int[] slots = new int[size];
+        BitSet superseded = new BitSet(n);
+        for (int i = 0; i < n; i++) {
+            long id = broadcastIdAt(i), phone = phoneAt(i);
+            int h = mix(id, phone) & (size - 1);
+            while (true) {
+                int j = slots[h] - 1;
+                if (j < 0) {
+                    slots[h] = i + 1;
+                    break;
+                }
+                if (broadcastIdAt(j) == id && phoneAt(j) == phone) {
+                    superseded.set(j);
+                    slots[h] = i + 1;
+                    break;
+                }
+                h = (h + 1) & (size - 1);
+            }
+        }
+
+        // distinct broadcast ids, sorted; a record's sort key is (rank of its id << 32 | position)
+        int kept = n - superseded.cardinality();
+        long[] ids = new long[kept];
+        for (int i = 0, k = 0; i < n; i++) {
+            if (!superseded.get(i)) ids[k++] = broadcastIdAt(i);
+        }
+        Arrays.sort(ids);
+        int distinct = 0;
+        for (int k = 0; k < kept; k++) {
+            if (distinct == 0 || ids[distinct - 1] != ids[k]) ids[distinct++] = ids[k];
+        }
+
+        long[] keys = new long[kept];
+        for (int i = 0, k = 0; i < n; i++) {
+            if (superseded.get(i)) continue;
+            long rank = Arrays.binarySearch(ids, 0, distinct, broadcastIdAt(i));
+            keys[k++] = rank << 32 | i;
+        }
+        Arrays.sort(keys);
+
+        int[] order = new int[kept];
+        for (int k = 0; k < kept; k++) order[k] = (int) keys[k];
+        return order;
+    }
+
+    /** Appends record {@code i} of {@code src} byte for byte. Caller owns this segment. */
+    void appendRaw(Segment src, int i) {
+        int n = count;
+        int off = n * RECORD_SIZE;
+        int srcOff = i * RECORD_SIZE;
+        // as in append(): everything else first, the broadcast id last
+        buf.put(off + 8, src.buf, srcOff + 8, RECORD_SIZE - 8);
+        long id = src.buf.getLong(srcOff);
+        buf.putLong(off, id);
+
+        index(n, id, src.buf.getLong(srcOff + 16));
+        count = n + 1;
+    }
+
+    private long broadcastIdAt(int i) {
+        return buf.getLong(i * RECORD_SIZE);
+    }
+
+    private long phoneAt(int i) {
+        return buf.getLong(i * RECORD_SIZE + 8);
+    }
+
+    private static int mix(long id, long phone) {
+        long h = id * 0x9E3779B97F4A7C15L ^ phone;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private DeliveryRecord read(int i) {
+        int off = i * RECORD_SIZE;
+        byte[] sid = new byte[buf.get(off + 31)];
+        buf.get(off + 36, sid);
+        return new DeliveryRecord(
+                buf.getLong(off),
+                DeliveryRecord.unpackPhone(buf.getLong(off + 8)),
+                Instant.ofEpochMilli(buf.getLong(off + 16)),
+                STATUSES[buf.get(off + 30)],
+                buf.getShort(off + 28),
+                buf.getInt(off + 32),
+                buf.getInt(off + 24),
+                sid.length == 0 ? null : new String(sid, StandardCharsets.US_ASCII)
+        );
+    }
+
+    void force() {
+        buf.force();
+    }
+}
@@ -0,0 +1,8 @@
+package com.lta.whatsapp.dto;
+
+/**
+ * One subscription as written to the NDJSON listing; a plain projection so
+ * streamed rows never enter the persistence context.
+ */
+public record SubscriptionRow(Long id, String lineCode, String phone) {
+}
@@ -26,6 +26,16 @@ public class WhatsappAudit {
   @Column(nullable = false)
   private LocalDateTime createdAt = LocalDateTime.now();
 
+  // GSM-7 / UCS-2 and billed segments per recipient (null on rows from before this was tracked)
+  @Column(length = 8)
+  private String encoding;
+
+  private Integer segments;
+
+  // node-prefixed id of the broadcast, to find its records in that node's delivery log
+  @Column(name = "broadcast_id")
+  private Long broadcastId;
+
   public WhatsappAudit() {}
 
   public WhatsappAudit(String lineCode, String message, int recipientCount, boolean testMode) {
@@ -36,6 +46,15 @@ public class WhatsappAudit {
     this.createdAt = LocalDateTime.now();
   }
 
+  public WhatsappAudit(String lineCode, String message, int recipientCount, boolean testMode,
+                       String encoding, int segments) {
+    this(lineCode, message, recipientCount, testMode);
+    this.encoding = encoding;
+    this.segments = segments;
+  }
+
+  public void setBroadcastId(Long broadcastId) { this.broadcastId = broadcastId; }
+
   // getters (add setters only if you need them)
   public Long getId() { return id; }
   public String getLineCode() { return lineCode; }
@@ -43,4 +62,7 @@ public class WhatsappAudit {
   public int getRecipientCount() { return recipientCount; }
   public boolean isTestMode() { return testMode; }
   public LocalDateTime getCreatedAt() { return createdAt; }
+  public String getEncoding() { return encoding; }
+  public Integer getSegments() { return segments; }
+  public Long getBroadcastId() { return broadcastId; }
 }
@@ -0,0 +1,54 @@
+package com.lta.whatsapp.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Pre-aggregated audit counts per line, per hour or per day.
+ * Filled incrementally by AuditRollupJob; stats read these instead of whatsapp_audit.
+ */
+@Entity
+@Table(
+        name = "whatsapp_audit_rollup",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"granularity", "bucket_start", "line_code", "test_mode"})
+)
+public class WhatsappAuditRollup {
+
+  public static final String HOUR = "HOUR";
+  public static final String DAY = "DAY";
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(name = "granularity", nullable = false, length = 8)
+  private String granularity;
+
+  @Column(name = "bucket_start", nullable = false)
+  private LocalDateTime bucketStart;
+
+  @Column(name = "line_code", nullable = false)
+  private String lineCode;
+
+  @Column(name = "test_mode", nullable = false)
+  private boolean testMode;
+
+  // alerts sent in the bucket
+  @Column(nullable = false)
+  private long alerts;
+
+  // sum of recipientCount over those alerts
+  @Column(nullable = false)
+  private long recipients;
+
+  public WhatsappAuditRollup() {}
+
+  // getters
+  public Long getId() { return id; }
+  public String getGranularity() { return granularity; }
+  public LocalDateTime getBucketStart() { return bucketStart; }
+  public String getLineCode() { return lineCode; }
+  public boolean isTestMode() { return testMode; }
+  public long getAlerts() { return alerts; }
+  public long getRecipients() { return recipients; }
+}
@@ -0,0 +1,26 @@
+package com.lta.whatsapp.model;
+
+import jakarta.persistence.*;
+
+/** High-water mark of the audit rollup: every audit row up to lastAuditId is aggregated. */
+@Entity
+@Table(name = "whatsapp_audit_rollup_state")
+public class WhatsappAuditRollupState {
+
+  @Id
+  @Column(length = 32)
+  private String name;
+
+  @Column(name = "last_audit_id", nullable = false)
+  private long lastAuditId;
+
+  public WhatsappAuditRollupState() {}
+
+  public WhatsappAuditRollupState(String name, long lastAuditId) {
+    this.name = name;
+    this.lastAuditId = lastAuditId;
+  }
+
+  public String getName() { return name; }
+  public long getLastAuditId() { return lastAuditId; }
+}
@@ -0,0 +1,40 @@
+package com.lta.whatsapp.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "whatsapp_suppressions")
+public class WhatsappSuppression {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "phone", nullable = false, unique = true)
+    private String phone;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    public WhatsappSuppression() {
+    }
+
+    public WhatsappSuppression(String phone) {
+        this.phone = phone;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // getters
+    public Long getId() {
+        return id;
+    }
+
+    public String getPhone() {
+        return phone;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
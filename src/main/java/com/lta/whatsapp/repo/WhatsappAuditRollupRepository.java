@@ -0,0 +1,26 @@
+package com.lta.whatsapp.repo;
+
+import com.lta.whatsapp.model.WhatsappAuditRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface WhatsappAuditRollupRepository extends JpaRepository<WhatsappAuditRollup, Long> {
+  List<WhatsappAuditRollup> findByGranularityAndBucketStartGreaterThanEqualOrderByBucketStartAscLineCodeAsc(
+      String granularity, LocalDateTime from);
+
+  @Query("select r.lineCode as lineCode, r.testMode as testMode, sum(r.alerts) as alerts, sum(r.recipients) as recipients "
+      + "from WhatsappAuditRollup r where r.granularity = 'DAY' and r.bucketStart >= :from "
+      + "group by r.lineCode, r.testMode order by r.lineCode")
+  List<LineTotals> sumDailyByLine(@Param("from") LocalDateTime from);
+
+  interface LineTotals {
+    String getLineCode();
+    boolean getTestMode();
+    long getAlerts();
+    long getRecipients();
+  }
+}
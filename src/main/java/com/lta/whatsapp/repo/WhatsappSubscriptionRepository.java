@@ -1,12 +1,43 @@
 package com.lta.whatsapp.repo;
 
+import com.lta.whatsapp.dto.SubscriptionRow;
 import com.lta.whatsapp.model.WhatsappSubscription;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface WhatsappSubscriptionRepository extends JpaRepository<WhatsappSubscription, Long> {
     List<WhatsappSubscription> findByLineCode(String lineCode);
     Optional<WhatsappSubscription> findByLineCodeAndPhone(String lineCode, String phone);
     void deleteByLineCodeAndPhone(String lineCode, String phone);
+
+    // single DELETE for every line, instead of the load-then-delete of derived deletes
+    @Modifying
+    @Query("delete from WhatsappSubscription s where s.phone = :phone")
+    int deleteAllByPhone(@Param("phone") String phone);
+
+    @Query("select s.lineCode from WhatsappSubscription s where s.phone = :phone order by s.lineCode")
+    List<String> findLineCodesByPhone(@Param("phone") String phone);
+
+    // keyset-paged cursors; MIN_VALUE fetch size makes MySQL Connector/J stream rows
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "-2147483648"))
+    Stream<SubscriptionRow> streamByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "-2147483648"))
+    Stream<SubscriptionRow> streamByLineCodeAndIdGreaterThanOrderByIdAsc(String lineCode, Long afterId, Limit limit);
+
+    @Query("select s.lineCode as lineCode, count(s) as subscribers from WhatsappSubscription s group by s.lineCode order by s.lineCode")
+    List<LineCount> countByLine();
+
+    interface LineCount {
+        String getLineCode();
+        long getSubscribers();
+    }
 }
@@ -0,0 +1,21 @@
+package com.lta.whatsapp.repo;
+
+import com.lta.whatsapp.model.WhatsappSuppression;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface WhatsappSuppressionRepository extends JpaRepository<WhatsappSuppression, Long> {
+    Optional<WhatsappSuppression> findByPhone(String phone);
+
+    @Query("select s.phone from WhatsappSuppression s")
+    List<String> findAllPhones();
+
+    @Modifying
+    @Query("delete from WhatsappSuppression s where s.phone = :phone")
+    int deleteByPhone(@Param("phone") String phone);
+}
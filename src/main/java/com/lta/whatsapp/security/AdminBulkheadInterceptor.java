@@ -0,0 +1,62 @@
+package com.lta.whatsapp.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Keeps the admin API inside its own slice of the request thread pool, so the
+ * rest of the pool is always there for the /twilio webhook.
+ *
+ * The limit also has to stay below the DB pool: an NDJSON export holds a
+ * connection for as long as it streams, so by default the admin API gets at
+ * most half of spring.datasource.hikari.maximum-pool-size.
+ */
+@Component
+public class AdminBulkheadInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String PERMIT_ATTR = AdminBulkheadInterceptor.class.getName() + ".permit";
+
+    private final Semaphore permits;
+    private final int retryAfterSeconds;
+
+    public AdminBulkheadInterceptor(
+            @Value("${app.admission.admin-max-concurrent:-1}") int maxConcurrent,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int dbPoolSize,
+            @Value("${app.admission.retry-after-seconds:5}") int retryAfterSeconds
+    ) {
+        this.permits = new Semaphore(maxConcurrent > 0 ? maxConcurrent : Math.max(1, dbPoolSize / 2));
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest req, HttpServletResponse res, Object handler) throws IOException {
+        // async re-dispatch (streamed responses) already holds its permit
+        if (req.getDispatcherType() == DispatcherType.ASYNC) return true;
+
+        if (permits.tryAcquire()) {
+            req.setAttribute(PERMIT_ATTR, Boolean.TRUE);
+            return true;
+        }
+
+        res.setStatus(503);
+        res.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        res.setContentType("application/json");
+        res.getWriter().write("{\"error\":\"Admin API busy, retry later\"}");
+        return false;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest req, HttpServletResponse res, Object handler, Exception ex) {
+        if (req.getAttribute(PERMIT_ATTR) != null) {
+            req.removeAttribute(PERMIT_ATTR);
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.lta.whatsapp.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps whatsapp_audit range-partitioned by month (opt-in via
+ * app.audit.partitioning.enabled).
+ *
+ * Future partitions are split off pmax ahead of time, and retention drops
+ * whole expired partitions, which is a metadata change rather than a
+ * row-by-row DELETE. Rollups are brought up to date before anything is dropped.
+ *
+ * Every instance runs this on startup and on the same cron, so the work is done
+ * under a MySQL named lock; whoever loses the race skips the run.
+ */
+@Component
+@Lazy(false)
+public class AuditPartitionManager {
+
+    private static final String TABLE = "whatsapp_audit";
+    private static final String LOCK = "whatsapp_audit_partitions";
+    private static final DateTimeFormatter NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private final JdbcTemplate jdbc;
+    private final AuditRollupJob rollupJob;
+    private final boolean enabled;
+    private final int retentionMonths;
+    private final int futureMonths;
+
+    public AuditPartitionManager(JdbcTemplate jdbc,
+                                 AuditRollupJob rollupJob,
+                                 @Value("${app.audit.partitioning.enabled:false}") boolean enabled,
+                                 @Value("${app.audit.retention-months:12}") int retentionMonths,
+                                 @Value("${app.audit.partitioning.future-months:3}") int futureMonths) {
+        this.jdbc = jdbc;
+        this.rollupJob = rollupJob;
+        this.enabled = enabled;
+        this.retentionMonths = retentionMonths;
+        this.futureMonths = futureMonths;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        try {
+            maintain();
+        } catch (RuntimeException e) {
+            // the table works unpartitioned; the nightly run will try again
+            System.out.println("[AUDIT] partition maintenance failed on startup: " + e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${app.audit.partitioning.cron:0 15 3 * * *}")
+    public void maintain() {
+        if (!enabled) return;
+
+        // GET_LOCK belongs to the session, so everything runs on one connection
+        jdbc.execute((ConnectionCallback<Void>) con -> {
+            JdbcTemplate session = new JdbcTemplate(new SingleConnectionDataSource(con, true));
+            Integer got = session.queryForObject("SELECT GET_LOCK(?, 0)", Integer.class, LOCK);
+            if (got == null || got != 1) {
+                System.out.println("[AUDIT] partition maintenance running elsewhere, skipping");
+                return null;
+            }
+            try {
+                maintain(session);
+            } finally {
+                session.queryForObject("SELECT RELEASE_LOCK(?)", Integer.class, LOCK);
+            }
+            return null;
+        });
+    }
+
+    private void maintain(JdbcTemplate jdbc) {
+        // read under the lock: another instance may have just changed the layout
+        List<String> existing = partitions(jdbc);
+        if (existing.isEmpty()) {
+            partitionTable(jdbc);
+            existing = partitions(jdbc);
+        }
+
+        // make sure the next few months have their own partition
+        YearMonth now = YearMonth.now();
+        for (int i = 0; i <= futureMonths; i++) {
+            YearMonth month = now.plusMonths(i);
+            String name = month.atDay(1).format(NAME);
+            if (!existing.contains(name)) {
+                jdbc.execute("ALTER TABLE " + TABLE + " REORGANIZE PARTITION pmax INTO ("
+                        + definition(month) + ", PARTITION pmax VALUES LESS THAN (MAXVALUE))");
+                System.out.println("[AUDIT] added partition " + name);
+            }
+        }
+
+        // retention: drop whole months that are past it
+        String oldestKept = now.minusMonths(retentionMonths).atDay(1).format(NAME);
+        List<String> expired = existing.stream()
+                .filter(p -> !p.equals("pmax") && p.compareTo(oldestKept) < 0)
+                .toList();
+        if (!expired.isEmpty()) {
+            rollupJob.run();
+            jdbc.execute("ALTER TABLE " + TABLE + " DROP PARTITION " + String.join(", ", expired));
+            System.out.println("[AUDIT] dropped partitions " + expired);
+        }
+    }
+
+    // one-off conversion of the plain table
+    private void partitionTable(JdbcTemplate jdbc) {
+        // MySQL wants the partitioning column in every unique key, including the PK
+        jdbc.execute("ALTER TABLE " + TABLE + " DROP PRIMARY KEY, ADD PRIMARY KEY (id, created_at)");
+
+        LocalDate oldest = jdbc.queryForObject("SELECT DATE(MIN(created_at)) FROM " + TABLE, LocalDate.class);
+        YearMonth first = oldest == null ? YearMonth.now() : YearMonth.from(oldest);
+        YearMonth last = YearMonth.now().plusMonths(futureMonths);
+
+        List<String> defs = new ArrayList<>();
+        for (YearMonth m = first; !m.isAfter(last); m = m.plusMonths(1)) {
+            defs.add(definition(m));
+        }
+        defs.add("PARTITION pmax VALUES LESS THAN (MAXVALUE)");
+
+        jdbc.execute("ALTER TABLE " + TABLE + " PARTITION BY RANGE COLUMNS(created_at) ("
+                + String.join(", ", defs) + ")");
+        System.out.println("[AUDIT] partitioned " + TABLE + " into " + defs.size() + " partitions");
+    }
+
+    private List<String> partitions(JdbcTemplate jdbc) {
+        return jdbc.queryForList("""
+                SELECT PARTITION_NAME FROM information_schema.PARTITIONS
+                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL
+                ORDER BY PARTITION_ORDINAL_POSITION
+                """, String.class, TABLE);
+    }
+
+    private String definition(YearMonth month) {
+        return "PARTITION " + month.atDay(1).format(NAME)
+                + " VALUES LESS THAN ('" + month.plusMonths(1).atDay(1) + " 00:00:00')";
+    }
+}
@@ -0,0 +1,71 @@
+package com.lta.whatsapp.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Folds new whatsapp_audit rows into hourly and daily per-line rollups.
+ *
+ * Each run only aggregates rows past the stored high-water mark, so its cost
+ * follows the alerts sent since the last run, not the size of the history.
+ * The state row is locked for the run, which keeps concurrent instances from
+ * counting the same rows twice.
+ */
+@Component
+@Lazy(false)
+public class AuditRollupJob {
+
+    private static final String STATE = "audit";
+
+    // rows younger than this may still be committing with a lower id
+    private static final int SETTLE_SECONDS = 5;
+
+    private static final String UPSERT = """
+            INSERT INTO whatsapp_audit_rollup (granularity, bucket_start, line_code, test_mode, alerts, recipients)
+            SELECT * FROM (
+                SELECT ? AS g, %s AS b, line_code AS l, test_mode AS t, COUNT(*) AS a, SUM(recipient_count) AS r
+                FROM whatsapp_audit
+                WHERE id > ? AND id <= ?
+                GROUP BY g, b, l, t
+            ) AS agg
+            ON DUPLICATE KEY UPDATE alerts = alerts + agg.a, recipients = recipients + agg.r
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final int hourlyRetentionDays;
+
+    public AuditRollupJob(JdbcTemplate jdbc,
+                          @Value("${app.audit.rollup.hourly-retention-days:90}") int hourlyRetentionDays) {
+        this.jdbc = jdbc;
+        this.hourlyRetentionDays = hourlyRetentionDays;
+    }
+
+    @Scheduled(fixedDelayString = "${app.audit.rollup.interval-ms:60000}")
+    @Transactional
+    public void run() {
+        jdbc.update("INSERT IGNORE INTO whatsapp_audit_rollup_state (name, last_audit_id) VALUES (?, 0)", STATE);
+        long from = jdbc.queryForObject(
+                "SELECT last_audit_id FROM whatsapp_audit_rollup_state WHERE name = ? FOR UPDATE", Long.class, STATE);
+        Long to = jdbc.queryForObject(
+                "SELECT MAX(id) FROM whatsapp_audit WHERE id > ? AND created_at < ?",
+                Long.class, from, LocalDateTime.now().minusSeconds(SETTLE_SECONDS));
+        if (to == null) return;
+
+        jdbc.update(UPSERT.formatted("DATE_FORMAT(created_at, '%Y-%m-%d %H:00:00')"), "HOUR", from, to);
+        jdbc.update(UPSERT.formatted("DATE(created_at)"), "DAY", from, to);
+        jdbc.update("UPDATE whatsapp_audit_rollup_state SET last_audit_id = ? WHERE name = ?", to, STATE);
+    }
+
+    /** Hourly buckets are only kept for recent history; daily ones are kept for good. */
+    @Scheduled(cron = "${app.audit.rollup.prune-cron:0 30 3 * * *}")
+    public void pruneHourly() {
+        jdbc.update("DELETE FROM whatsapp_audit_rollup WHERE granularity = 'HOUR' AND bucket_start < ?",
+                LocalDateTime.now().minusDays(hourlyRetentionDays));
+    }
+}
@@ -0,0 +1,65 @@
+package com.lta.whatsapp.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps how many broadcasts run at once. A few more may wait briefly for a slot;
+ * past that, callers are turned away immediately so admin bursts cannot tie up
+ * the threads and DB connections the webhook needs.
+ */
+@Component
+public class BroadcastAdmission {
+
+    public enum Outcome { ADMITTED, QUEUE_FULL, TIMED_OUT }
+
+    private final Semaphore running;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final int maxQueued;
+    private final long queueTimeoutMillis;
+    private final int retryAfterSeconds;
+
+    public BroadcastAdmission(
+            @Value("${app.admission.max-concurrent-broadcasts:2}") int maxConcurrent,
+            @Value("${app.admission.max-queued-broadcasts:4}") int maxQueued,
+            @Value("${app.admission.queue-timeout-ms:2000}") long queueTimeoutMillis,
+            @Value("${app.admission.retry-after-seconds:5}") int retryAfterSeconds
+    ) {
+        this.running = new Semaphore(maxConcurrent, true);
+        this.maxQueued = maxQueued;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /** On ADMITTED the caller must call {@link #exit()} when the broadcast is done. */
+    public Outcome enter() {
+        if (running.tryAcquire()) return Outcome.ADMITTED;
+
+        if (waiting.incrementAndGet() > maxQueued) {
+            waiting.decrementAndGet();
+            return Outcome.QUEUE_FULL;
+        }
+        try {
+            return running.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS)
+                    ? Outcome.ADMITTED
+                    : Outcome.TIMED_OUT;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Outcome.TIMED_OUT;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    public void exit() {
+        running.release();
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
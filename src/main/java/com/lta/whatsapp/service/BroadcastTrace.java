@@ -0,0 +1,126 @@
+package com.lta.whatsapp.service;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+
+/**
+ * Timing breakdown for one broadcast: how long each stage took (lookup,
+ * encode, send, audit) plus per-recipient send latencies, of which only the
+ * slowest few and a status-code histogram are kept once the broadcast ends.
+ */
+public class BroadcastTrace {
+
+    private static final int SLOWEST_KEPT = 10;
+
+    /** One Twilio call as seen by the send path. */
+    public record SendOutcome(String recipient, String from, int status, long latencyNanos,
+                              String sid, int errorCode) { }
+
+    private final String traceId = UUID.randomUUID().toString();
+    private final String line;
+    private final boolean test;
+    private final OffsetDateTime startedAt = OffsetDateTime.now();
+    private final long startedNanos = System.nanoTime();
+
+    private final Map<String, Long> spanNanos = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    // min-heap on latency: the root is the fastest of the slowest N
+    private final PriorityQueue<SendOutcome> slowest =
+            new PriorityQueue<>(Comparator.comparingLong(SendOutcome::latencyNanos));
+    private final Map<Integer, Integer> statusCounts = new TreeMap<>();
+    private long[] latencies = new long[64];
+    private int sends = 0;
+
+    private long totalNanos = -1;
+    private long p50Nanos, p95Nanos, maxNanos;
+    private String error;
+    private volatile long broadcastId;
+
+    public BroadcastTrace(String line, boolean test) {
+        this.line = line;
+        this.test = test;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public void setBroadcastId(long broadcastId) {
+        this.broadcastId = broadcastId;
+    }
+
+    /** Records a stage that began at {@code startNanos} (from System.nanoTime()) and ends now. */
+    public void span(String stage, long startNanos) {
+        spanNanos.merge(stage, System.nanoTime() - startNanos, Long::sum);
+    }
+
+    public synchronized void recordSend(SendOutcome outcome) {
+        if (latencies == null) return; // already finished (e.g. a late parked resume)
+        if (sends == latencies.length) latencies = Arrays.copyOf(latencies, sends * 2);
+        latencies[sends++] = outcome.latencyNanos();
+        statusCounts.merge(outcome.status(), 1, Integer::sum);
+
+        slowest.offer(outcome);
+        if (slowest.size() > SLOWEST_KEPT) slowest.poll();
+    }
+
+    public void fail(Exception e) {
+        this.error = e.getMessage();
+    }
+
+    /** Closes the trace and drops the raw latency samples. */
+    public synchronized BroadcastTrace finish() {
+        if (totalNanos >= 0) return this;
+        totalNanos = System.nanoTime() - startedNanos;
+        if (sends > 0) {
+            long[] sorted = Arrays.copyOf(latencies, sends);
+            Arrays.sort(sorted);
+            p50Nanos = sorted[sends / 2];
+            p95Nanos = sorted[Math.min(sends - 1, (int) (sends * 0.95))];
+            maxNanos = sorted[sends - 1];
+        }
+        latencies = null;
+        return this;
+    }
+
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("traceId", traceId);
+        if (broadcastId > 0) out.put("broadcastId", broadcastId);
+        out.put("line", line);
+        out.put("test", test);
+        out.put("startedAt", startedAt.toString());
+        out.put("totalMs", millis(totalNanos >= 0 ? totalNanos : System.nanoTime() - startedNanos));
+
+        Map<String, Object> spans = new LinkedHashMap<>();
+        synchronized (spanNanos) {
+            spanNanos.forEach((stage, nanos) -> spans.put(stage, millis(nanos)));
+        }
+        out.put("spansMs", spans);
+
+        out.put("sends", sends);
+        out.put("statusCounts", new TreeMap<>(statusCounts));
+        out.put("sendP50Ms", millis(p50Nanos));
+        out.put("sendP95Ms", millis(p95Nanos));
+        out.put("sendMaxMs", millis(maxNanos));
+
+        List<SendOutcome> worst = new ArrayList<>(slowest);
+        worst.sort(Comparator.comparingLong(SendOutcome::latencyNanos).reversed());
+        List<Map<String, Object>> outliers = new ArrayList<>();
+        for (SendOutcome o : worst) {
+            outliers.add(Map.of(
+                    "recipient", o.recipient(),
+                    "from", o.from(),
+                    "status", o.status(),
+                    "latencyMs", millis(o.latencyNanos())
+            ));
+        }
+        out.put("slowest", outliers);
+        if (error != null) out.put("error", error);
+        return out;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+}
@@ -0,0 +1,31 @@
+package com.lta.whatsapp.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/** The last N finished broadcast traces, newest first. */
+@Component
+public class BroadcastTraceStore {
+
+    private final int retained;
+    private final Deque<BroadcastTrace> recent = new ArrayDeque<>();
+
+    public BroadcastTraceStore(@Value("${app.trace.retained:100}") int retained) {
+        this.retained = retained;
+    }
+
+    public synchronized void add(BroadcastTrace trace) {
+        recent.addFirst(trace);
+        while (recent.size() > retained) recent.removeLast();
+    }
+
+    public synchronized Optional<BroadcastTrace> find(String traceId) {
+        return recent.stream().filter(t -> t.getTraceId().equals(traceId)).findFirst();
+    }
+
+    public synchronized List<BroadcastTrace> list() {
+        return new ArrayList<>(recent);
+    }
+}
@@ -0,0 +1,100 @@
+package com.lta.whatsapp.service;
+
+/**
+ * Works out how a message body will be encoded by the provider (GSM-7 or UCS-2)
+ * and how many segments it will be billed and rate-limited as.
+ *
+ * A single character outside the GSM-7 alphabet (an emoji, a curly quote)
+ * switches the whole message to UCS-2, which drops a segment from 160 to 70
+ * characters.
+ */
+public final class MessageEncoding {
+
+    public static final String GSM_7 = "GSM-7";
+    public static final String UCS_2 = "UCS-2";
+
+    private static final String GSM_BASIC =
+            "@£$¥èéùìòÇ\nØø\rÅåΔ_ΦΓΛΩΠΨΣΘΞÆæßÉ !\"#¤%&'()*+,-./0123456789:;<=>?"
+            + "¡ABCDEFGHIJKLMNOPQRSTUVWXYZÄÖÑÜ§¿abcdefghijklmnopqrstuvwxyzäöñüà";
+
+    // each of these costs an escape septet plus the character
+    private static final String GSM_EXTENDED = "^{}\\[~]|€\f";
+
+    private static final int GSM_SINGLE = 160, GSM_MULTI = 153;
+    private static final int UCS_SINGLE = 70, UCS_MULTI = 67;
+
+    private MessageEncoding() {
+    }
+
+    public record Info(String encoding, int units, int segments) {
+    }
+
+    public static Info analyze(String text) {
+        int septets = gsmSeptets(text);
+        if (septets >= 0) {
+            return new Info(GSM_7, septets, segments(septets, GSM_SINGLE, GSM_MULTI));
+        }
+        // UCS-2 counts UTF-16 code units, so an emoji takes two
+        int units = text.length();
+        return new Info(UCS_2, units, segments(units, UCS_SINGLE, UCS_MULTI));
+    }
+
+    /**
+     * Rewrites a message into GSM-7 and trims it to one segment: typographic
+     * punctuation becomes its ASCII twin, anything else outside the alphabet
+     * (emoji included) is dropped, runs of spaces collapse.
+     */
+    public static String compact(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        text.codePoints().forEach(cp -> {
+            switch (cp) {
+                case '‘', '’', '‚', '′' -> sb.append('\'');
+                case '“', '”', '„', '″' -> sb.append('"');
+                case '–', '—', '−', '•' -> sb.append('-');
+                case '…' -> sb.append("...");
+                case '\u00A0', '\t' -> sb.append(' ');
+                default -> {
+                    if (cp < 0x10000 && isGsm((char) cp)) sb.appendCodePoint(cp);
+                }
+            }
+        });
+
+        String out = sb.toString()
+                .replaceAll(" {2,}", " ")
+                .replaceAll(" *\n *", "\n")
+                .strip();
+
+        if (gsmSeptets(out) <= GSM_SINGLE) return out;
+
+        // cut to fit, leaving room for the ellipsis
+        int septets = 0, end = 0;
+        while (end < out.length()) {
+            int cost = GSM_EXTENDED.indexOf(out.charAt(end)) >= 0 ? 2 : 1;
+            if (septets + cost > GSM_SINGLE - 3) break;
+            septets += cost;
+            end++;
+        }
+        return out.substring(0, end).stripTrailing() + "...";
+    }
+
+    /** Septet count in GSM-7, or -1 if the text needs UCS-2. */
+    private static int gsmSeptets(String text) {
+        int septets = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (GSM_BASIC.indexOf(c) >= 0) septets++;
+            else if (GSM_EXTENDED.indexOf(c) >= 0) septets += 2;
+            else return -1;
+        }
+        return septets;
+    }
+
+    private static boolean isGsm(char c) {
+        return GSM_BASIC.indexOf(c) >= 0 || GSM_EXTENDED.indexOf(c) >= 0;
+    }
+
+    private static int segments(int units, int single, int multi) {
+        if (units <= single) return 1;
+        return (units + multi - 1) / multi;
+    }
+}
@@ -0,0 +1,226 @@
+package com.lta.whatsapp.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of Twilio sender numbers.
+ *
+ * Each sender has its own token bucket (the provider limits throughput per
+ * sender). Recipients are mapped to senders by rendezvous hashing, so the same
+ * recipient gets the same "from" on every instance and across restarts without
+ * storing anything. Load still counts: when a recipient's first-ranked sender
+ * has a backlog well beyond its second-ranked one, the less loaded of the two
+ * takes it. A sender that keeps failing is taken out of rotation until its
+ * cooldown expires, and only its recipients move to their next-ranked sender.
+ */
+@Component
+public class SenderPool {
+
+    private final List<Sender> senders;
+
+    private final int failureThreshold;
+    private final long cooldownMillis;
+
+    // how much bigger the first choice's backlog may be before the second choice takes over
+    private final int loadSlack;
+
+    public SenderPool(
+            @Value("${twilio.from-number}") String fromNumber,
+            @Value("${twilio.from-numbers:}") String fromNumbers,
+            @Value("${twilio.sender-rate-per-second:10}") double ratePerSecond,
+            @Value("${twilio.sender-failure-threshold:5}") int failureThreshold,
+            @Value("${twilio.sender-cooldown-seconds:300}") long cooldownSeconds,
+            @Value("${twilio.sender-load-slack:100}") int loadSlack
+    ) {
+        // twilio.from-numbers is optional; the single from-number stays the default pool
+        Set<String> numbers = new LinkedHashSet<>();
+        for (String n : (fromNumbers + "," + fromNumber).split(",")) {
+            if (!n.isBlank()) numbers.add(n.trim());
+        }
+        if (numbers.isEmpty()) throw new IllegalStateException("No Twilio sender numbers configured");
+
+        List<Sender> list = new ArrayList<>();
+        for (String n : numbers) list.add(new Sender(n, ratePerSecond));
+        this.senders = List.copyOf(list);
+        this.failureThreshold = failureThreshold;
+        this.cooldownMillis = cooldownSeconds * 1000;
+        this.loadSlack = loadSlack;
+    }
+
+    /* =================== ASSIGNMENT =================== */
+
+    /**
+     * Sender for this recipient: the less loaded of its two highest-ranked
+     * healthy senders, the first one unless it is more than the slack behind.
+     */
+    public Sender assign(String recipient) {
+        Sender first = null;
+        for (Sender s : ranked(recipient)) {
+            if (!s.isHealthy()) continue;
+            if (first == null) {
+                first = s;
+                continue;
+            }
+            return first.pending.get() - s.pending.get() > loadSlack ? s : first;
+        }
+        if (first != null) return first;
+
+        // every sender is out: fall back to the one whose cooldown ends first
+        return senders.stream()
+                .min(Comparator.comparingLong(s -> s.disabledUntil))
+                .orElseThrow();
+    }
+
+    /** Groups recipients by assigned sender, keeping recipient order inside each group. */
+    public Map<Sender, List<String>> partition(List<String> recipients) {
+        Map<Sender, List<String>> bySender = new LinkedHashMap<>();
+        for (String r : recipients) {
+            Sender s = assign(r);
+            s.pending.incrementAndGet();
+            bySender.computeIfAbsent(s, k -> new ArrayList<>()).add(r);
+        }
+        return bySender;
+    }
+
+    /**
+     * Moves a recipient off a sender that just failed for them: the next healthy
+     * sender after it in the recipient's ranking, so repeated failovers walk the
+     * same order on every instance.
+     */
+    public Sender reassign(String recipient, Sender failed) {
+        List<Sender> ranked = ranked(recipient);
+        int from = ranked.indexOf(failed);
+        Sender chosen = failed;
+        for (int i = 1; i < ranked.size(); i++) {
+            Sender s = ranked.get((from + i) % ranked.size());
+            if (s.isHealthy()) {
+                chosen = s;
+                break;
+            }
+        }
+        chosen.pending.incrementAndGet();
+        return chosen;
+    }
+
+    // senders ordered by rendezvous score for this recipient, best first
+    private List<Sender> ranked(String recipient) {
+        List<Sender> out = new ArrayList<>(senders);
+        out.sort(Comparator.comparingLong((Sender s) -> score(recipient, s.number)).reversed());
+        return out;
+    }
+
+    // FNV-1a over "recipient|sender", then a 64-bit finaliser so close inputs spread out
+    private static long score(String recipient, String sender) {
+        long h = 0xcbf29ce484222325L;
+        String key = recipient + "|" + sender;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /* =================== OUTCOMES =================== */
+
+    public void recordSuccess(Sender s) {
+        s.pending.decrementAndGet();
+        s.consecutiveFailures.set(0);
+    }
+
+    /**
+     * A sender-side failure (5xx, auth, I/O). Recipient-side rejections such as
+     * an invalid "To" should not count against the sender.
+     */
+    public void recordFailure(Sender s) {
+        s.pending.decrementAndGet();
+        if (s.consecutiveFailures.incrementAndGet() >= failureThreshold && s.isHealthy()) {
+            s.disabledUntil = System.currentTimeMillis() + cooldownMillis;
+            System.out.println("[SENDER DISABLED] " + s.number + " for " + (cooldownMillis / 1000) + "s");
+        }
+    }
+
+    /** Recipient-side rejection: releases the slot without touching sender health. */
+    public void recordRejected(Sender s) {
+        s.pending.decrementAndGet();
+    }
+
+    /** Releases slots that were assigned but will not be sent. */
+    public void release(Sender s, int count) {
+        if (count > 0) s.pending.addAndGet(-count);
+    }
+
+    public int size() {
+        return senders.size();
+    }
+
+    public List<Map<String, Object>> status() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (Sender s : senders) {
+            out.add(Map.of(
+                    "number", s.number,
+                    "healthy", s.isHealthy(),
+                    "pending", s.pending.get(),
+                    "consecutiveFailures", s.consecutiveFailures.get()
+            ));
+        }
+        return out;
+    }
+
+    /* =================== SENDER =================== */
+
+    public static final class Sender {
+
+        private final String number;
+        private final double ratePerSecond;
+        private final long burst;
+
+        // token bucket
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private volatile long disabledUntil = 0;
+
+        Sender(String number, double ratePerSecond) {
+            this.number = number;
+            this.ratePerSecond = ratePerSecond;
+            this.burst = Math.max(1, (long) ratePerSecond);
+            this.tokens = burst;
+        }
+
+        public String getNumber() {
+            return number;
+        }
+
+        public boolean isHealthy() {
+            // once the cooldown has passed the sender is back on probation
+            return System.currentTimeMillis() >= disabledUntil;
+        }
+
+        /** Blocks until this sender has budget for one more message. */
+        public void acquire() throws InterruptedException {
+            while (true) {
+                long waitNanos;
+                synchronized (this) {
+                    long now = System.nanoTime();
+                    tokens = Math.min(burst, tokens + (now - lastRefillNanos) * ratePerSecond / 1_000_000_000d);
+                    lastRefillNanos = now;
+                    if (tokens >= 1) {
+                        tokens -= 1;
+                        return;
+                    }
+                    waitNanos = (long) ((1 - tokens) * 1_000_000_000d / ratePerSecond);
+                }
+                Thread.sleep(Math.max(1, waitNanos / 1_000_000));
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.lta.whatsapp.service;
+
+import com.lta.whatsapp.repo.WhatsappSuppressionRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory view of whatsapp_suppressions, checked on the send path.
+ *
+ * Most recipients are not suppressed, so a Bloom filter answers "definitely not"
+ * with a few bit reads; only possible hits go to the exact set. The persistent
+ * list lives in the DB and is authoritative: this copy is loaded in the
+ * background on startup (checks wait for it rather than let anyone through) and
+ * re-read periodically, so a STOP handled by another instance takes effect here
+ * within one refresh interval.
+ */
+@Component
+public class SuppressionList {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    // a local STOP/START may not be committed yet when a refresh reads the table;
+    // changes this recent win over the snapshot
+    private static final long LOCAL_CHANGE_GRACE_MILLIS = 60_000;
+
+    private final WhatsappSuppressionRepository suppressionRepo;
+    private final int expectedSize;
+    private final long loadTimeoutMillis;
+
+    // open once the table has been read at least once
+    private final CountDownLatch loaded = new CountDownLatch(1);
+
+    private volatile Set<String> exact = ConcurrentHashMap.newKeySet();
+    private volatile BloomFilter bloom;
+
+    private record LocalChange(boolean suppressed, long atMillis) { }
+    private final Map<String, LocalChange> localChanges = new ConcurrentHashMap<>();
+
+    public SuppressionList(WhatsappSuppressionRepository suppressionRepo,
+                           @Value("${app.suppression.expected-size:100000}") int expectedSize,
+                           @Value("${app.suppression.load-timeout-ms:10000}") long loadTimeoutMillis) {
+        this.suppressionRepo = suppressionRepo;
+        this.expectedSize = expectedSize;
+        this.loadTimeoutMillis = loadTimeoutMillis;
+        this.bloom = new BloomFilter(expectedSize, FALSE_POSITIVE_RATE);
+    }
+
+    // a large table must not hold up startup; if this fails the next refresh retries
+    @PostConstruct
+    void loadInBackground() {
+        Thread.ofVirtual().name("suppression-load").start(() -> {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                System.out.println("[SUPPRESSION] initial load failed, retrying on next refresh: " + e.getMessage());
+            }
+        });
+    }
+
+    /** Re-reads whatsapp_suppressions so STOP/START from other instances show up here. */
+    @Scheduled(fixedDelayString = "${app.suppression.refresh-ms:30000}",
+               initialDelayString = "${app.suppression.refresh-ms:30000}")
+    public void refresh() {
+        long started = System.currentTimeMillis();
+        Set<String> next = ConcurrentHashMap.newKeySet();
+        next.addAll(suppressionRepo.findAllPhones());
+
+        synchronized (this) {
+            localChanges.entrySet().removeIf(e -> {
+                LocalChange c = e.getValue();
+                if (c.atMillis() < started - LOCAL_CHANGE_GRACE_MILLIS) return true;
+                if (c.suppressed()) next.add(e.getKey());
+                else next.remove(e.getKey());
+                return false;
+            });
+            boolean first = loaded.getCount() > 0;
+            if (first || !next.equals(exact)) {
+                int before = exact.size();
+                BloomFilter filter = new BloomFilter(Math.max(expectedSize, next.size() * 2), FALSE_POSITIVE_RATE);
+                for (String phone : next) filter.put(phone);
+                bloom = filter;
+                exact = next;
+                System.out.println(first
+                        ? "[SUPPRESSION] loaded " + next.size() + " numbers in " + (System.currentTimeMillis() - started) + " ms"
+                        : "[SUPPRESSION] refreshed " + before + " -> " + next.size() + " numbers");
+            }
+        }
+        loaded.countDown();
+    }
+
+    public boolean isSuppressed(String phone) {
+        awaitLoaded();
+        return bloom.mightContain(phone) && exact.contains(phone);
+    }
+
+    // until the first load, nobody can be shown not to be suppressed
+    private void awaitLoaded() {
+        if (loaded.getCount() == 0) return;
+        try {
+            if (loaded.await(loadTimeoutMillis, TimeUnit.MILLISECONDS)) return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new IllegalStateException("Suppression list not loaded yet");
+    }
+
+    /** Recipients that are not suppressed, in their original order. */
+    public List<String> filter(Collection<String> recipients) {
+        List<String> out = new ArrayList<>(recipients.size());
+        for (String r : recipients) {
+            if (!isSuppressed(r)) out.add(r);
+        }
+        return out;
+    }
+
+    public synchronized void add(String phone) {
+        localChanges.put(phone, new LocalChange(true, System.currentTimeMillis()));
+        if (exact.add(phone)) {
+            bloom.put(phone);
+            // past its design size the false-positive rate climbs; resize
+            if (exact.size() > bloom.capacity) rebuild();
+        }
+    }
+
+    public synchronized void remove(String phone) {
+        localChanges.put(phone, new LocalChange(false, System.currentTimeMillis()));
+        // Bloom filters cannot delete; a stale bit only costs one exact-set lookup
+        exact.remove(phone);
+    }
+
+    public int size() {
+        return exact.size();
+    }
+
+    private synchronized void rebuild() {
+        BloomFilter next = new BloomFilter(Math.max(expectedSize, exact.size() * 2), FALSE_POSITIVE_RATE);
+        for (String phone : exact) next.put(phone);
+        bloom = next;
+    }
+
+    /* =================== BLOOM FILTER =================== */
+
+    static final class BloomFilter {
+
+        final int capacity;
+        private final int numBits;
+        private final int numHashes;
+        private final AtomicLongArray bits;
+
+        BloomFilter(int capacity, double fpp) {
+            this.capacity = capacity;
+            long m = (long) Math.ceil(-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            this.numBits = (int) Math.max(64, Math.min(m, Integer.MAX_VALUE - 63));
+            this.numHashes = Math.max(1, (int) Math.round((double) numBits / capacity * Math.log(2)));
+            this.bits = new AtomicLongArray((numBits + 63) >>> 6);
+        }
+
+        void put(String key) {
+            long h = hash64(key);
+            int h1 = (int) h;
+            int h2 = (int) (h >>> 32);
+            for (int i = 0; i < numHashes; i++) {
+                int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+                int word = bit >>> 6;
+                long mask = 1L << bit;
+                long old;
+                do {
+                    old = bits.get(word);
+                    if ((old & mask) != 0) break;
+                } while (!bits.compareAndSet(word, old, old | mask));
+            }
+        }
+
+        boolean mightContain(String key) {
+            long h = hash64(key);
+            int h1 = (int) h;
+            int h2 = (int) (h >>> 32);
+            for (int i = 0; i < numHashes; i++) {
+                int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+                if ((bits.get(bit >>> 6) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        // FNV-1a, 64-bit
+        private static long hash64(String key) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                h ^= key.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return h;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.lta.whatsapp.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Circuit breaker around outbound Twilio calls.
+ *
+ * Tracks the last N calls for error rate and slow-call rate. Past either
+ * threshold the circuit opens and sends fail fast; after the open period (or
+ * sooner, if the health probe gets through) a few trial calls are let through
+ * half-open, and the circuit closes again once they succeed. Successful probes
+ * count as trials, so the circuit closes (and parked sends resume) even when no
+ * new traffic arrives.
+ */
+@Component
+@Lazy(false)
+public class TwilioCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int windowSize;
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final double slowRateThreshold;
+    private final long slowCallNanos;
+    private final long openMillis;
+    private final int halfOpenTrials;
+
+    // rolling window (ring buffer)
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private final long[] latencyNanos;
+    private int next = 0;
+    private int recorded = 0;
+
+    private State state = State.CLOSED;
+    private long openUntil = 0;
+    private long halfOpenSince = 0;
+    private int trialsStarted = 0;
+    private int trialsSucceeded = 0;
+
+    private volatile String lastProbe = "never";
+
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+
+    @Value("${twilio.account-sid}")
+    private String accountSid;
+
+    @Value("${twilio.auth-token}")
+    private String authToken;
+
+    public TwilioCircuitBreaker(
+            @Value("${twilio.breaker.window-size:50}") int windowSize,
+            @Value("${twilio.breaker.min-calls:10}") int minCalls,
+            @Value("${twilio.breaker.failure-rate:0.5}") double failureRateThreshold,
+            @Value("${twilio.breaker.slow-rate:0.8}") double slowRateThreshold,
+            @Value("${twilio.breaker.slow-call-ms:5000}") long slowCallMillis,
+            @Value("${twilio.breaker.open-seconds:30}") long openSeconds,
+            @Value("${twilio.breaker.half-open-trials:3}") int halfOpenTrials
+    ) {
+        this.windowSize = windowSize;
+        this.minCalls = minCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowRateThreshold = slowRateThreshold;
+        this.slowCallNanos = slowCallMillis * 1_000_000;
+        this.openMillis = openSeconds * 1000;
+        this.halfOpenTrials = halfOpenTrials;
+        this.failed = new boolean[windowSize];
+        this.slow = new boolean[windowSize];
+        this.latencyNanos = new long[windowSize];
+    }
+
+    /** Called whenever the circuit closes, e.g. to resume parked sends. */
+    public void onClose(Runnable listener) {
+        closeListeners.add(listener);
+    }
+
+    /** Whether a call may go out now. Every permitted call must be followed by {@link #record}. */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() < openUntil) return false;
+            halfOpen();
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted >= halfOpenTrials) {
+                // trials never reported back: start a fresh round rather than stay stuck
+                if (System.currentTimeMillis() - halfOpenSince < openMillis) return false;
+                halfOpen();
+            }
+            trialsStarted++;
+        }
+        return true;
+    }
+
+    public void record(boolean success, long latency) {
+        boolean closed;
+        synchronized (this) {
+            closed = recordLocked(success, latency);
+        }
+        if (closed) notifyClosed();
+    }
+
+    private void notifyClosed() {
+        System.out.println("[BREAKER] closed");
+        closeListeners.forEach(Runnable::run);
+    }
+
+    // returns true if this call closed the circuit
+    private boolean recordLocked(boolean success, long latency) {
+        boolean isSlow = latency >= slowCallNanos;
+
+        if (state == State.HALF_OPEN) {
+            if (!success || isSlow) {
+                open();
+                return false;
+            }
+            if (++trialsSucceeded >= halfOpenTrials) {
+                state = State.CLOSED;
+                resetWindow();
+                return true;
+            }
+            return false;
+        }
+        if (state == State.OPEN) return false; // late result of a call started before opening
+
+        failed[next] = !success;
+        slow[next] = isSlow;
+        latencyNanos[next] = latency;
+        next = (next + 1) % windowSize;
+        if (recorded < windowSize) recorded++;
+
+        if (recorded >= minCalls
+                && (rate(failed) >= failureRateThreshold || rate(slow) >= slowRateThreshold)) {
+            open();
+        }
+        return false;
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() >= openUntil) return State.HALF_OPEN;
+        return state;
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        long[] lat = Arrays.copyOf(latencyNanos, recorded);
+        Arrays.sort(lat);
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("state", getState().name());
+        out.put("windowCalls", recorded);
+        out.put("failureRate", recorded == 0 ? 0.0 : rate(failed));
+        out.put("slowRate", recorded == 0 ? 0.0 : rate(slow));
+        out.put("p50LatencyMs", recorded == 0 ? 0 : lat[recorded / 2] / 1_000_000);
+        out.put("p95LatencyMs", recorded == 0 ? 0 : lat[Math.min(recorded - 1, (int) (recorded * 0.95))] / 1_000_000);
+        if (state == State.OPEN) out.put("openUntil", Instant.ofEpochMilli(openUntil).toString());
+        out.put("lastProbe", lastProbe);
+        return out;
+    }
+
+    /* =================== HEALTH PROBE =================== */
+
+    /**
+     * While not closed, a cheap authenticated GET of the account resource tells
+     * us whether Twilio is back: the circuit goes half-open before the full open
+     * period runs out, and each successful probe counts as a successful trial.
+     */
+    @Scheduled(fixedDelayString = "${twilio.breaker.probe-interval-ms:5000}")
+    public void probe() {
+        synchronized (this) {
+            if (state == State.CLOSED) return;
+        }
+        try {
+            long started = System.nanoTime();
+            URL url = URI.create("https://api.twilio.com/2010-04-01/Accounts/" + accountSid + ".json").toURL();
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            conn.setConnectTimeout(2000);
+            conn.setReadTimeout(2000);
+            String auth = accountSid + ":" + authToken;
+            conn.setRequestProperty("Authorization",
+                    "Basic " + Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8)));
+            int code = conn.getResponseCode();
+            conn.disconnect();
+            lastProbe = "HTTP " + code;
+            if (code >= 200 && code < 300) probeSucceeded(System.nanoTime() - started);
+        } catch (Exception e) {
+            lastProbe = "error: " + e.getMessage();
+        }
+    }
+
+    // a failed probe changes nothing: real trial calls still decide whether to re-open
+    void probeSucceeded(long latency) {
+        boolean closed;
+        synchronized (this) {
+            if (state == State.CLOSED) return;
+            if (state == State.OPEN) halfOpen();
+            if (trialsStarted >= halfOpenTrials) {
+                // real trials are in flight; if they never report back, start a fresh round
+                if (System.currentTimeMillis() - halfOpenSince < openMillis) return;
+                halfOpen();
+            }
+            trialsStarted++;
+            closed = recordLocked(true, latency);
+        }
+        if (closed) notifyClosed();
+    }
+
+    /* =================== HELPERS =================== */
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + openMillis;
+        System.out.println("[BREAKER] open for " + (openMillis / 1000) + "s");
+    }
+
+    private void halfOpen() {
+        state = State.HALF_OPEN;
+        halfOpenSince = System.currentTimeMillis();
+        trialsStarted = 0;
+        trialsSucceeded = 0;
+    }
+
+    private void resetWindow() {
+        Arrays.fill(failed, false);
+        Arrays.fill(slow, false);
+        Arrays.fill(latencyNanos, 0);
+        next = 0;
+        recorded = 0;
+    }
+
+    private double rate(boolean[] flags) {
+        int n = 0;
+        for (int i = 0; i < recorded; i++) {
+            if (flags[i]) n++;
+        }
+        return (double) n / recorded;
+    }
+}
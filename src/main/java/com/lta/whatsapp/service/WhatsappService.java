@@ -1,28 +1,52 @@
 package com.lta.whatsapp.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.lta.whatsapp.delivery.DeliveryLog;
+import com.lta.whatsapp.delivery.DeliveryRecord;
+import com.lta.whatsapp.dto.SubscriptionRow;
 import com.lta.whatsapp.model.WhatsappSubscription;
 import com.lta.whatsapp.repo.WhatsappSubscriptionRepository;
 import com.lta.whatsapp.model.WhatsappAudit;
 import com.lta.whatsapp.repo.WhatsappAuditRepository;
+import com.lta.whatsapp.model.WhatsappAuditRollup;
+import com.lta.whatsapp.repo.WhatsappAuditRollupRepository;
+import com.lta.whatsapp.model.WhatsappSuppression;
+import com.lta.whatsapp.repo.WhatsappSuppressionRepository;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.net.ssl.*;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import java.util.stream.Collectors;
 
 @Service
+@Lazy(false)
 public class WhatsappService {
 
     // in-memory fallback
@@ -35,6 +59,11 @@ public class WhatsappService {
     // DB repo
     private final WhatsappSubscriptionRepository subscriptionRepository;
     private final WhatsappAuditRepository auditRepo;   // ← add this
+    private final WhatsappSuppressionRepository suppressionRepo;
+    private final WhatsappAuditRollupRepository rollupRepo;
+
+    // STOP list, checked before every send
+    private final SuppressionList suppressionList;
 
     // // keep your hardcoded recipients
     // private static final Map<String, List<String>> LINE_RECIPIENTS = Map.of(
@@ -54,13 +83,49 @@ public class WhatsappService {
     @Value("${twilio.auth-token}")
     private String authToken;
 
-    @Value("${twilio.from-number}")
-    private String fromNumber;
+    // outbound sender numbers (twilio.from-number / twilio.from-numbers)
+    private final SenderPool senderPool;
+
+    // sends block on I/O and on per-sender rate budgets, so virtual threads keep this cheap
+    private final ExecutorService senderExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // fail fast while Twilio is down; recipients are parked until it recovers
+    private final TwilioCircuitBreaker breaker;
+    private final BlockingQueue<ParkedSend> parked;
+
+    // per-recipient outcomes, kept on local disk instead of in MySQL
+    private final DeliveryLog deliveryLog;
+
+    // Twilio replies (sid on success, error code on failure)
+    private final ObjectMapper objectMapper;
+
+    @Value("${twilio.connect-timeout-ms:3000}")
+    private int connectTimeoutMs;
+
+    @Value("${twilio.read-timeout-ms:10000}")
+    private int readTimeoutMs;
 
     public WhatsappService(WhatsappSubscriptionRepository subscriptionRepository,
-                        WhatsappAuditRepository auditRepo) {
+                        WhatsappAuditRepository auditRepo,
+                        WhatsappSuppressionRepository suppressionRepo,
+                        WhatsappAuditRollupRepository rollupRepo,
+                        SuppressionList suppressionList,
+                        SenderPool senderPool,
+                        TwilioCircuitBreaker breaker,
+                        DeliveryLog deliveryLog,
+                        ObjectMapper objectMapper,
+                        @Value("${twilio.breaker.max-parked:100000}") int maxParked) {
         this.subscriptionRepository = subscriptionRepository;
         this.auditRepo = auditRepo;
+        this.suppressionRepo = suppressionRepo;
+        this.rollupRepo = rollupRepo;
+        this.suppressionList = suppressionList;
+        this.senderPool = senderPool;
+        this.breaker = breaker;
+        this.deliveryLog = deliveryLog;
+        this.objectMapper = objectMapper;
+        this.parked = new LinkedBlockingQueue<>(maxParked);
+        breaker.onClose(this::resumeParked);
     }
 
 
@@ -101,8 +166,45 @@ public class WhatsappService {
         System.out.println("[UNSUB→DB] " + normLine + " / " + normPhone);
     }
 
+    /* =================== OPT-OUT =================== */
+
+    /** STOP: drops every line for this number and suppresses further sends. */
+    @Transactional
+    public int optOut(String phone) {
+        String normPhone = normalizePhone(phone);
+
+        // ✅ one DELETE across all lines
+        int removed = subscriptionRepository.deleteAllByPhone(normPhone);
+
+        suppressionRepo.findByPhone(normPhone)
+            .orElseGet(() -> suppressionRepo.save(new WhatsappSuppression(normPhone)));
+        suppressionList.add(normPhone);
+
+        // update cache
+        subscribersByLine.values().forEach(set -> set.remove(normPhone));
+
+        System.out.println("[STOP→DB] " + normPhone + " (" + removed + " lines)");
+        return removed;
+    }
+
+    /** START: lifts the suppression; the user still has to SUB again. */
+    @Transactional
+    public void optIn(String phone) {
+        String normPhone = normalizePhone(phone);
+        suppressionRepo.deleteByPhone(normPhone);
+        suppressionList.remove(normPhone);
+
+        System.out.println("[START→DB] " + normPhone);
+    }
+
+    public boolean isSuppressed(String phone) {
+        return suppressionList.isSuppressed(normalizePhone(phone));
+    }
+
     /* =================== READERS =================== */
+    // readOnly transactions are served by the read replica when one is configured
 
+    @Transactional(readOnly = true)
     public List<String> getSubscribersForLine(String line) {
         String normLine = normalizeLine(line);
 
@@ -110,6 +212,7 @@ public class WhatsappService {
         List<String> db = subscriptionRepository.findByLineCode(normLine)
                 .stream()
                 .map(WhatsappSubscription::getPhone)
+                .filter(p -> !suppressionList.isSuppressed(p))
                 .toList();
         if (!db.isEmpty()) {
             return db;
@@ -120,9 +223,10 @@ public class WhatsappService {
         if (mem == null || mem.isEmpty()) {
             mem = subscribersByLine.getOrDefault("GENERAL", Set.of());
         }
-        return new ArrayList<>(mem);
+        return suppressionList.filter(mem);
     }
 
+    @Transactional(readOnly = true)
     public Map<String, Set<String>> getAllSubscriptions() {
         List<WhatsappSubscription> all = subscriptionRepository.findAll();
         if (!all.isEmpty()) {
@@ -137,6 +241,43 @@ public class WhatsappService {
         return subscribersByLine;
     }
 
+    @Transactional(readOnly = true)
+    public List<String> getLinesForPhone(String phone) {
+        return subscriptionRepository.findLineCodesByPhone(normalizePhone(phone));
+    }
+
+    /**
+     * Streams subscriptions in id order straight from a DB cursor.
+     *
+     * @param line    only this line, or null for all
+     * @param afterId resume after this id (0 for the start)
+     * @param limit   max rows, or 0 for no limit
+     * @return id to resume after if the page was full, otherwise null
+     */
+    @Transactional(readOnly = true)
+    public Long streamSubscriptions(String line, long afterId, int limit, Consumer<SubscriptionRow> sink) {
+        Limit max = limit > 0 ? Limit.of(limit) : Limit.unlimited();
+        Long lastId = null;
+        int count = 0;
+        try (Stream<SubscriptionRow> rows = (line == null)
+                ? subscriptionRepository.streamByIdGreaterThanOrderByIdAsc(afterId, max)
+                : subscriptionRepository.streamByLineCodeAndIdGreaterThanOrderByIdAsc(normalizeLine(line), afterId, max)) {
+            Iterator<SubscriptionRow> it = rows.iterator();
+            while (it.hasNext()) {
+                SubscriptionRow row = it.next();
+                sink.accept(row);
+                lastId = row.id();
+                count++;
+            }
+        }
+        return (limit > 0 && count == limit) ? lastId : null;
+    }
+
+    @Transactional(readOnly = true)
+    public List<WhatsappSubscriptionRepository.LineCount> getSubscriptionCounts() {
+        return subscriptionRepository.countByLine();
+    }
+
     /* =================== BROADCAST =================== */
 
     public int broadcast(String line, String message) {
@@ -162,40 +303,284 @@ public class WhatsappService {
 
     /* =================== SEND =================== */
 
-    public void sendAlert(String body, List<String> recipients) {
+    /**
+     * Recipients of a send that did not go out right away.
+     *
+     * @param parked  held because the Twilio circuit is open; they go out automatically once it closes
+     * @param dropped could not be parked because the queue was full; they will not be sent
+     * @param failed  every sender failed for them (5xx, auth, rate limit, I/O); they will not be sent
+     */
+    public record SendResult(int parked, int dropped, int failed) {
+        static final SendResult NONE = new SendResult(0, 0, 0);
+
+        SendResult plus(SendResult other) {
+            return new SendResult(parked + other.parked, dropped + other.dropped, failed + other.failed);
+        }
+
+        /** Recipients that will not get this message. */
+        public int lost() {
+            return dropped + failed;
+        }
+    }
+
+    /** Sends to every recipient. */
+    public SendResult sendAlert(String body, List<String> recipients) {
+        return sendAlert(body, recipients, 0, null);
+    }
+
+    /**
+     * Same as {@link #sendAlert(String, List)}, reporting every Twilio call to
+     * {@code onSend} and, for a non-zero {@code broadcastId}, to the delivery log.
+     */
+    public SendResult sendAlert(String body, List<String> recipients, long broadcastId,
+                                Consumer<BroadcastTrace.SendOutcome> onSend) {
         try {
             // trust-all for PoC
             SSLContext sc = SSLContext.getInstance("TLS");
             sc.init(null, trustAll(), new SecureRandom());
             HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
             HttpsURLConnection.setDefaultHostnameVerifier((h, s) -> true);
+        } catch (Exception e) {
+            throw new RuntimeException("Twilio send failed: " + e.getMessage(), e);
+        }
 
-            for (String recipient : recipients) {
-                String toRaw = recipient.startsWith("whatsapp:") ? recipient : "whatsapp:" + recipient;
-                String to = encodePlus(toRaw);
-                String from = encodePlus(fromNumber);
-
-                String formString = "From=" + from + "&To=" + to + "&Body=" + urlEncode(body);
+        // never spend an API call on someone who sent STOP
+        recipients = recipients.stream()
+                .filter(r -> !suppressionList.isSuppressed(r.startsWith("whatsapp:") ? r : normalizePhone(r)))
+                .toList();
 
-                URL url = new URL("https://api.twilio.com/2010-04-01/Accounts/" + accountSid + "/Messages.json");
-                HttpsURLConnection conn = (HttpsURLConnection) url.openConnection();
-                conn.setRequestMethod("POST");
-                conn.setDoOutput(true);
-                conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-                conn.setRequestProperty("Authorization", basicAuth(accountSid, authToken));
+        // one worker per sender, each paced by that sender's own rate budget
+        List<Future<SendResult>> batches = new ArrayList<>();
+        senderPool.partition(recipients).forEach((sender, batch) ->
+                batches.add(senderExecutor.submit(() -> sendBatch(sender, batch, body, broadcastId, onSend))));
+
+        SendResult result = SendResult.NONE;
+        RuntimeException failure = null;
+        for (Future<SendResult> f : batches) {
+            try {
+                result = result.plus(f.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException re
+                            ? re
+                            : new RuntimeException("Twilio send failed: " + e.getCause().getMessage(), e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Twilio send interrupted", e);
+            }
+        }
+        if (failure != null) throw failure;
+        return result;
+    }
 
-                try (OutputStream os = conn.getOutputStream()) {
-                    os.write(formString.getBytes(StandardCharsets.UTF_8));
+    // returns how many recipients of this batch were parked, dropped or failed;
+    // only an open circuit (or an interrupt) stops the batch early
+    private SendResult sendBatch(SenderPool.Sender sender, List<String> batch, String body, long broadcastId,
+                                 Consumer<BroadcastTrace.SendOutcome> onSend) throws InterruptedException {
+        int failed = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                if (sendOne(sender, batch.get(i), body, broadcastId, onSend) == DeliveryRecord.Status.FAILED) {
+                    failed++;
                 }
+            } catch (CircuitOpenException e) {
+                // Twilio is down: hold this and the rest of the batch until the circuit closes
+                List<String> rest = batch.subList(i, batch.size());
+                senderPool.release(sender, rest.size() - 1);
+                return park(body, rest, broadcastId).plus(new SendResult(0, 0, failed));
+            } catch (InterruptedException e) {
+                // the rest of this batch will not be sent: give back their slots
+                senderPool.release(sender, batch.size() - i - 1);
+                throw e;
+            }
+        }
+        return new SendResult(0, 0, failed);
+    }
 
-                int code = conn.getResponseCode();
+    /**
+     * One recipient, failing over between senders on sender-side errors. Every
+     * attempt is already in the trace, the delivery log and the breaker, so
+     * neither a rejection (invalid number, not on WhatsApp, ...) nor running out
+     * of senders is an error for the broadcast: the outcome is returned instead.
+     *
+     * @throws CircuitOpenException if the circuit is open and the recipient should be parked
+     */
+    private DeliveryRecord.Status sendOne(SenderPool.Sender sender, String recipient, String body, long broadcastId,
+                                          Consumer<BroadcastTrace.SendOutcome> onSend) throws InterruptedException {
+        String toRaw = recipient.startsWith("whatsapp:") ? recipient : "whatsapp:" + recipient;
+
+        SenderPool.Sender current = sender;
+        for (int attempt = 1; ; attempt++) {
+            if (!breaker.tryAcquire()) {
+                senderPool.recordRejected(current);
+                throw new CircuitOpenException();
+            }
+            current.acquire();
+            int code;
+            String err = null;
+            String sid = null;
+            int errorCode = 0;
+            long started = System.nanoTime();
+            try {
+                HttpsURLConnection conn = postMessage(current.getNumber(), toRaw, body);
+                code = conn.getResponseCode();
                 if (code >= 300) {
-                    String err = new String(conn.getErrorStream().readAllBytes(), StandardCharsets.UTF_8);
-                    throw new RuntimeException("Twilio HTTP " + code + ": " + err);
+                    err = conn.getErrorStream() == null
+                            ? ""
+                            : new String(conn.getErrorStream().readAllBytes(), StandardCharsets.UTF_8);
+                    errorCode = parseReply(err).path("code").asInt(0);
+                } else {
+                    sid = parseReply(new String(conn.getInputStream().readAllBytes(), StandardCharsets.UTF_8))
+                            .path("sid").asText(null);
                 }
+            } catch (IOException e) {
+                code = -1;
+                err = e.getMessage();
             }
-        } catch (Exception e) {
-            throw new RuntimeException("Twilio send failed: " + e.getMessage(), e);
+            long latency = System.nanoTime() - started;
+            // recipient-side 4xx means Twilio itself answered fine
+            breaker.record(code > 0 && code < 500 && code != 429, latency);
+
+            BroadcastTrace.SendOutcome outcome = new BroadcastTrace.SendOutcome(
+                    recipient, current.getNumber(), code, latency, sid, errorCode);
+            if (onSend != null) onSend.accept(outcome);
+            if (broadcastId > 0) deliveryLog.append(toDeliveryRecord(broadcastId, outcome));
+
+            if (code >= 200 && code < 300) {
+                senderPool.recordSuccess(current);
+                return DeliveryRecord.Status.SENT;
+            }
+            if (isRecipientRejection(code)) {
+                // the recipient was rejected, the sender itself is fine: carry on with the next one
+                senderPool.recordRejected(current);
+                System.out.println("[REJECTED] " + recipient + " HTTP " + code + " code=" + outcome.errorCode());
+                return DeliveryRecord.Status.REJECTED;
+            }
+
+            // sender-side failure: count it and fail over to another sender
+            senderPool.recordFailure(current);
+            if (attempt >= senderPool.size()) {
+                System.out.println("[FAILED] " + recipient + " HTTP " + code + ": " + err);
+                return DeliveryRecord.Status.FAILED;
+            }
+            current = senderPool.reassign(recipient, current);
+        }
+    }
+
+    private HttpsURLConnection postMessage(String fromNumber, String toRaw, String body) throws IOException {
+        String to = encodePlus(toRaw);
+        String from = encodePlus(fromNumber);
+
+        String formString = "From=" + from + "&To=" + to + "&Body=" + urlEncode(body);
+
+        URL url = new URL("https://api.twilio.com/2010-04-01/Accounts/" + accountSid + "/Messages.json");
+        HttpsURLConnection conn = (HttpsURLConnection) url.openConnection();
+        conn.setConnectTimeout(connectTimeoutMs);
+        conn.setReadTimeout(readTimeoutMs);
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+        conn.setRequestProperty("Authorization", basicAuth(accountSid, authToken));
+
+        try (OutputStream os = conn.getOutputStream()) {
+            os.write(formString.getBytes(StandardCharsets.UTF_8));
+        }
+        return conn;
+    }
+
+    /* =================== PARKING (circuit open) =================== */
+
+    private record ParkedSend(long broadcastId, String body, String recipient) { }
+
+    private SendResult park(String body, List<String> recipients, long broadcastId) {
+        int n = 0;
+        for (String r : recipients) {
+            boolean queued = parked.offer(new ParkedSend(broadcastId, body, r));
+            if (queued) n++;
+            if (broadcastId > 0) {
+                // a recipient that does not fit in the queue is failed, not silently lost
+                deliveryLog.append(new DeliveryRecord(broadcastId, r, Instant.now(),
+                        queued ? DeliveryRecord.Status.PARKED : DeliveryRecord.Status.FAILED, 0, 0, 0, null));
+            }
+        }
+        int dropped = recipients.size() - n;
+        if (dropped > 0) {
+            System.out.println("[PARK] queue full, dropped " + dropped + " sends");
+        }
+        return new SendResult(n, dropped, 0);
+    }
+
+    // runs when the breaker closes; sends go out in the order they were parked
+    private void resumeParked() {
+        List<ParkedSend> drained = new ArrayList<>();
+        parked.drainTo(drained);
+        if (drained.isEmpty()) return;
+
+        // one resumed send per original broadcast
+        Map<ParkedSend, List<String>> byBroadcast = new LinkedHashMap<>();
+        for (ParkedSend p : drained) {
+            byBroadcast.computeIfAbsent(new ParkedSend(p.broadcastId(), p.body(), null), k -> new ArrayList<>())
+                    .add(p.recipient());
+        }
+        System.out.println("[PARK] resuming " + drained.size() + " sends");
+        byBroadcast.forEach((key, recipients) -> senderExecutor.submit(() -> {
+            try {
+                sendAlert(key.body(), recipients, key.broadcastId(), null);
+            } catch (Exception e) {
+                System.out.println("[PARK] resume failed: " + e.getMessage());
+            }
+        }));
+    }
+
+    /* =================== DELIVERY LOG =================== */
+
+    public long newBroadcastId() {
+        return deliveryLog.nextBroadcastId();
+    }
+
+    /** The node whose delivery log holds this broadcast, or -1 when that is this one. */
+    public int remoteOwnerOf(long broadcastId) {
+        int owner = DeliveryLog.nodeOf(broadcastId);
+        return owner == deliveryLog.nodeId() ? -1 : owner;
+    }
+
+    /** Streams the per-recipient outcomes of one broadcast from the local delivery log. */
+    public void streamDeliveries(long broadcastId, Consumer<DeliveryRecord> sink) {
+        deliveryLog.scan(broadcastId, sink);
+    }
+
+    /** 4xx about the recipient; 401/403/429 are about the sender (credentials, number, rate) and fail over. */
+    private static boolean isRecipientRejection(int code) {
+        return code >= 400 && code < 500 && code != 401 && code != 403 && code != 429;
+    }
+
+    private DeliveryRecord toDeliveryRecord(long broadcastId, BroadcastTrace.SendOutcome o) {
+        DeliveryRecord.Status status;
+        if (o.status() >= 200 && o.status() < 300) status = DeliveryRecord.Status.SENT;
+        else if (isRecipientRejection(o.status())) status = DeliveryRecord.Status.REJECTED;
+        else status = DeliveryRecord.Status.FAILED;
+        return new DeliveryRecord(broadcastId, o.recipient(), Instant.now(), status, o.status(),
+                o.errorCode(), (int) Math.min(Integer.MAX_VALUE, o.latencyNanos() / 1000), o.sid());
+    }
+
+    public Map<String, Object> getTransportHealth() {
+        Map<String, Object> health = new LinkedHashMap<>(breaker.snapshot());
+        health.put("parked", parked.size());
+        return health;
+    }
+
+    public boolean isTransportOpen() {
+        return breaker.getState() == TwilioCircuitBreaker.State.OPEN;
+    }
+
+    public List<Map<String, Object>> getSenderStatus() {
+        return senderPool.status();
+    }
+
+    static final class CircuitOpenException extends RuntimeException {
+        CircuitOpenException() {
+            super("Twilio circuit open", null, false, false);
         }
     }
 
@@ -210,28 +595,81 @@ public class WhatsappService {
                             String message,
                             List<String> recipients,
                             boolean test) {
+        addAuditEntry(timestamp, line, message, recipients, test, null);
+    }
+
+    public void addAuditEntry(String timestamp,
+                            String line,
+                            String message,
+                            List<String> recipients,
+                            boolean test,
+                            MessageEncoding.Info encoding) {
+        addAuditEntry(timestamp, line, message, recipients, test, encoding, 0);
+    }
+
+    public void addAuditEntry(String timestamp,
+                            String line,
+                            String message,
+                            List<String> recipients,
+                            boolean test,
+                            MessageEncoding.Info encoding,
+                            long broadcastId) {
+        String normLine = (line == null || line.isBlank()) ? "GENERAL" : line.toUpperCase();
+        int count = recipients == null ? 0 : recipients.size();
+
         // 1) persist to DB (new)
-        auditRepo.save(new WhatsappAudit(
-                (line == null || line.isBlank()) ? "GENERAL" : line.toUpperCase(),
-                message,
-                recipients == null ? 0 : recipients.size(),
-                test
-        ));
+        WhatsappAudit audit = encoding == null
+                ? new WhatsappAudit(normLine, message, count, test)
+                : new WhatsappAudit(normLine, message, count, test, encoding.encoding(), encoding.segments());
+        if (broadcastId > 0) audit.setBroadcastId(broadcastId);
+        auditRepo.save(audit);
 
         // 2) keep the in-memory log (existing behaviour)
-        auditLog.add(Map.of(
-                "timestamp", timestamp,
-                "line", line,
-                "message", message,
-                "recipients", recipients,
-                "test", test
-        ));
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("timestamp", timestamp);
+        entry.put("line", line);
+        entry.put("message", message);
+        entry.put("recipients", recipients);
+        entry.put("test", test);
+        if (encoding != null) {
+            entry.put("encoding", encoding.encoding());
+            entry.put("segments", encoding.segments());
+        }
+        if (broadcastId > 0) entry.put("broadcastId", broadcastId);
+        auditLog.add(Collections.unmodifiableMap(entry));
         if (auditLog.size() > 200) {
             auditLog.remove(0);
         }
     }
 
 
+    @Transactional(readOnly = true)
+    public List<WhatsappAudit> getAuditSince(LocalDateTime after) {
+        return auditRepo.findByCreatedAtAfterOrderByCreatedAtDesc(after);
+    }
+
+    /* =================== STATS (from rollups) =================== */
+
+    /** Per-line buckets since {@code from}; granularity is HOUR or DAY. */
+    @Transactional(readOnly = true)
+    public List<WhatsappAuditRollup> getRollups(String granularity, LocalDateTime from) {
+        return rollupRepo.findByGranularityAndBucketStartGreaterThanEqualOrderByBucketStartAscLineCodeAsc(
+                granularity, from);
+    }
+
+    /** Totals per line since {@code from}, split into real and test sends. */
+    @Transactional(readOnly = true)
+    public Map<String, Map<String, Long>> getLineTotals(LocalDateTime from) {
+        Map<String, Map<String, Long>> out = new TreeMap<>();
+        for (WhatsappAuditRollupRepository.LineTotals t : rollupRepo.sumDailyByLine(from)) {
+            Map<String, Long> line = out.computeIfAbsent(t.getLineCode(), k -> new LinkedHashMap<>());
+            String mode = t.getTestMode() ? "test" : "real";
+            line.put(mode + "Alerts", t.getAlerts());
+            line.put(mode + "Recipients", t.getRecipients());
+        }
+        return out;
+    }
+
     public List<Map<String, Object>> getAuditLog() {
         return Collections.unmodifiableList(auditLog);
     }
@@ -267,6 +705,14 @@ public class WhatsappService {
         };
     }
 
+    private JsonNode parseReply(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (JsonProcessingException e) {
+            return MissingNode.getInstance();
+        }
+    }
+
     private String basicAuth(String user, String pass) {
         String s = user + ":" + pass;
         return "Basic " + Base64.getEncoder().encodeToString(s.getBytes(StandardCharsets.UTF_8));
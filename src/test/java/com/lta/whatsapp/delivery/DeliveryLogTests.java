@@ -0,0 +1,124 @@
+package com.lta.whatsapp.delivery;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeliveryLogTests {
+
+    @TempDir
+    Path dir;
+
+    private DeliveryLog open(int segmentRecords, int nodeId) throws Exception {
+        return new DeliveryLog(dir.toString(), segmentRecords, 30, nodeId);
+    }
+
+    private static DeliveryRecord record(long broadcastId, String phone, Instant at, DeliveryRecord.Status status) {
+        return new DeliveryRecord(broadcastId, phone, at, status, status == DeliveryRecord.Status.SENT ? 201 : 0,
+                0, 1000, null);
+    }
+
+    private static List<DeliveryRecord> scan(DeliveryLog log, long broadcastId) {
+        List<DeliveryRecord> out = new ArrayList<>();
+        log.scan(broadcastId, out::add);
+        return out;
+    }
+
+    private long segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(".seg")).count();
+        }
+    }
+
+    @Test
+    void rollsToANewSegmentWhenFull() throws Exception {
+        DeliveryLog log = open(4, 1);
+        for (int i = 0; i < 10; i++) {
+            log.append(record(7, "whatsapp:+659000000" + i, Instant.now(), DeliveryRecord.Status.SENT));
+        }
+        assertEquals(3, segmentFiles());
+        assertEquals(10, scan(log, 7).size());
+    }
+
+    @Test
+    void recordsSurviveARestart() throws Exception {
+        DeliveryLog log = open(4, 1);
+        long id = log.nextBroadcastId();
+        for (int i = 0; i < 6; i++) {
+            log.append(record(id, "whatsapp:+659000000" + i, Instant.now(), DeliveryRecord.Status.SENT));
+        }
+        log.flush();
+
+        DeliveryLog reopened = open(4, 1);
+        assertEquals(scan(log, id), scan(reopened, id));
+        assertTrue(reopened.nextBroadcastId() > id);
+    }
+
+    @Test
+    void broadcastIdsCarryTheNodeId() throws Exception {
+        long a = open(4, 1).nextBroadcastId();
+        long b = open(4, 2).nextBroadcastId();
+
+        assertEquals(1, DeliveryLog.nodeOf(a));
+        assertEquals(2, DeliveryLog.nodeOf(b));
+        assertEquals(2, open(4, 2).nodeId());
+        assertNotEquals(a & DeliveryLog.COUNTER_MASK, 0);
+        assertTrue(a < 1L << 53);
+    }
+
+    @Test
+    void maintenanceCompactsSealedSegmentsOnly() throws Exception {
+        DeliveryLog log = open(4, 1);
+        Instant now = Instant.now();
+        // sealed: a parked-then-sent recipient leaves two records
+        log.append(record(5, "whatsapp:+6590000001", now, DeliveryRecord.Status.PARKED));
+        log.append(record(4, "whatsapp:+6590000002", now, DeliveryRecord.Status.SENT));
+        log.append(record(5, "whatsapp:+6590000001", now, DeliveryRecord.Status.SENT));
+        log.append(record(5, "whatsapp:+6590000003", now, DeliveryRecord.Status.SENT));
+        // active
+        log.append(record(5, "whatsapp:+6590000004", now, DeliveryRecord.Status.PARKED));
+        log.append(record(5, "whatsapp:+6590000004", now, DeliveryRecord.Status.SENT));
+
+        log.maintain();
+
+        List<DeliveryRecord> five = scan(log, 5);
+        assertEquals(4, five.size());
+        assertEquals(DeliveryRecord.Status.SENT, five.get(0).status());
+        assertEquals(1, scan(log, 4).size());
+        try (Stream<Path> files = Files.list(dir)) {
+            Path first = files.filter(p -> p.toString().endsWith(".seg")).sorted().findFirst().orElseThrow();
+            assertEquals(3L * Segment.RECORD_SIZE, Files.size(first));
+        }
+
+        // the active segment keeps both writes until it is sealed, and a compacted file reopens cleanly
+        DeliveryLog reopened = open(4, 1);
+        assertEquals(five, scan(reopened, 5));
+    }
+
+    @Test
+    void maintenanceDropsSegmentsPastRetention() throws Exception {
+        DeliveryLog log = open(2, 1);
+        Instant old = Instant.now().minus(40, ChronoUnit.DAYS);
+        log.append(record(1, "whatsapp:+6590000001", old, DeliveryRecord.Status.SENT));
+        log.append(record(1, "whatsapp:+6590000002", old, DeliveryRecord.Status.SENT));
+        log.append(record(2, "whatsapp:+6590000001", Instant.now(), DeliveryRecord.Status.SENT));
+        assertEquals(2, segmentFiles());
+
+        log.maintain();
+
+        assertEquals(1, segmentFiles());
+        assertTrue(scan(log, 1).isEmpty());
+        assertEquals(1, scan(log, 2).size());
+    }
+}
@@ -0,0 +1,151 @@
+package com.lta.whatsapp.delivery;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentTests {
+
+    private static final Instant AT = Instant.parse("2025-01-15T08:00:00Z");
+
+    @TempDir
+    Path dir;
+
+    private static DeliveryRecord record(long broadcastId, String phone, DeliveryRecord.Status status) {
+        return new DeliveryRecord(broadcastId, phone, AT, status, 201, 0, 1500, "SM" + broadcastId);
+    }
+
+    private static List<DeliveryRecord> scan(Segment s, long broadcastId) {
+        List<DeliveryRecord> out = new ArrayList<>();
+        s.scan(broadcastId, out::add);
+        return out;
+    }
+
+    @Test
+    void roundTripsEveryField() throws Exception {
+        Segment s = Segment.open(1, dir.resolve("1.seg"), 16);
+        DeliveryRecord r = new DeliveryRecord(42, "whatsapp:+6591234567", AT,
+                DeliveryRecord.Status.REJECTED, 400, 63016, 123456, "SM0123456789abcdef0123456789abcdef");
+        s.append(r);
+
+        assertEquals(List.of(r), scan(s, 42));
+        assertEquals(1, s.count());
+        assertEquals(42, s.maxBroadcastId());
+        assertEquals(AT.toEpochMilli(), s.maxTimestamp());
+    }
+
+    @Test
+    void sidIsTruncatedToItsSlot() throws Exception {
+        Segment s = Segment.open(1, dir.resolve("1.seg"), 16);
+        s.append(new DeliveryRecord(1, "whatsapp:+6591234567", AT, DeliveryRecord.Status.SENT, 201, 0, 0,
+                "SM" + "x".repeat(40)));
+        s.append(new DeliveryRecord(2, "whatsapp:+6591234567", AT, DeliveryRecord.Status.PARKED, 0, 0, 0, null));
+
+        assertEquals(34, scan(s, 1).get(0).sid().length());
+        assertEquals(null, scan(s, 2).get(0).sid());
+    }
+
+    @Test
+    void recordLayoutOnDisk() throws Exception {
+        Path file = dir.resolve("1.seg");
+        Segment s = Segment.open(1, file, 4);
+        s.append(new DeliveryRecord(7, "whatsapp:+6591234567", AT, DeliveryRecord.Status.FAILED, 503, 20500, 99, "SMab"));
+        s.force();
+
+        assertEquals(4L * Segment.RECORD_SIZE, Files.size(file));
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(file));
+        assertEquals(7L, b.getLong(0));
+        assertEquals(6591234567L, b.getLong(8));
+        assertEquals(AT.toEpochMilli(), b.getLong(16));
+        assertEquals(99, b.getInt(24));
+        assertEquals(503, b.getShort(28));
+        assertEquals(DeliveryRecord.Status.FAILED.ordinal(), b.get(30));
+        assertEquals(4, b.get(31));
+        assertEquals(20500, b.getInt(32));
+        assertEquals("SMab", new String(b.array(), 36, 4, StandardCharsets.US_ASCII));
+        // the next slot is still empty
+        assertEquals(0L, b.getLong(Segment.RECORD_SIZE));
+    }
+
+    @Test
+    void reopenRecoversRecordsAndIndex() throws Exception {
+        Path file = dir.resolve("1.seg");
+        Segment s = Segment.open(1, file, 8);
+        for (int i = 1; i <= 3; i++) s.append(record(i, "whatsapp:+659000000" + i, DeliveryRecord.Status.SENT));
+        s.force();
+
+        Segment reopened = Segment.open(1, file, 8);
+        assertEquals(3, reopened.count());
+        assertEquals(3, reopened.maxBroadcastId());
+        assertEquals(1, scan(reopened, 2).size());
+        assertFalse(reopened.isFull());
+    }
+
+    @Test
+    void recoveryStopsAtTheFirstUnfinishedSlot() throws Exception {
+        Path file = dir.resolve("1.seg");
+        Segment s = Segment.open(1, file, 8);
+        for (int i = 1; i <= 3; i++) s.append(record(i, "whatsapp:+659000000" + i, DeliveryRecord.Status.SENT));
+        s.force();
+
+        // a crash mid-append: the second record's fields are there but its broadcast id never was
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.allocate(8), Segment.RECORD_SIZE);
+        }
+
+        Segment reopened = Segment.open(1, file, 8);
+        assertEquals(1, reopened.count());
+        assertEquals(1, reopened.maxBroadcastId());
+        assertTrue(scan(reopened, 3).isEmpty());
+    }
+
+    @Test
+    void sparseIndexSkipsBlocksWithoutTheBroadcast() throws Exception {
+        Segment s = Segment.open(1, dir.resolve("1.seg"), Segment.BLOCK_RECORDS * 3);
+        for (long id = 1; id <= 3; id++) {
+            for (int i = 0; i < Segment.BLOCK_RECORDS; i++) {
+                s.append(record(id, "whatsapp:+65" + (90000000 + i), DeliveryRecord.Status.SENT));
+            }
+        }
+        assertTrue(s.isFull());
+
+        assertEquals(1, s.blocksToScan(2));
+        assertEquals(Segment.BLOCK_RECORDS, scan(s, 2).size());
+        assertEquals(0, s.blocksToScan(4));
+        assertEquals(0, s.blocksToScan(0));
+    }
+
+    @Test
+    void compactionOrderKeepsTheLastWritePerRecipientSortedByBroadcast() throws Exception {
+        Segment s = Segment.open(1, dir.resolve("1.seg"), 16);
+        s.append(record(2, "whatsapp:+6590000001", DeliveryRecord.Status.PARKED)); // 0
+        s.append(record(1, "whatsapp:+6590000001", DeliveryRecord.Status.SENT));   // 1
+        s.append(record(2, "whatsapp:+6590000002", DeliveryRecord.Status.SENT));   // 2
+        s.append(record(2, "whatsapp:+6590000001", DeliveryRecord.Status.SENT));   // 3 supersedes 0
+        s.append(record(1, "whatsapp:+6590000003", DeliveryRecord.Status.FAILED)); // 4
+
+        int[] order = s.compactionOrder();
+        assertEquals(List.of(1, 4, 2, 3), Arrays.stream(order).boxed().toList());
+
+        Segment out = Segment.open(1, dir.resolve("1.compact"), order.length);
+        for (int i : order) out.appendRaw(s, i);
+        assertTrue(out.isFull());
+        assertEquals(List.of(DeliveryRecord.Status.SENT, DeliveryRecord.Status.SENT),
+                scan(out, 2).stream().map(DeliveryRecord::status).toList());
+        assertEquals(scan(s, 1), scan(out, 1));
+    }
+}
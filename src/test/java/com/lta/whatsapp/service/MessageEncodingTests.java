@@ -0,0 +1,85 @@
+package com.lta.whatsapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageEncodingTests {
+
+    @Test
+    void plainTextIsGsm7() {
+        MessageEncoding.Info info = MessageEncoding.analyze("NEL delay at Serangoon, +10 min @ 08:15");
+        assertEquals(MessageEncoding.GSM_7, info.encoding());
+        assertEquals(39, info.units());
+        assertEquals(1, info.segments());
+    }
+
+    @Test
+    void gsm7SegmentBoundaries() {
+        assertEquals(1, MessageEncoding.analyze("a".repeat(160)).segments());
+        assertEquals(2, MessageEncoding.analyze("a".repeat(161)).segments());
+        assertEquals(2, MessageEncoding.analyze("a".repeat(306)).segments());
+        assertEquals(3, MessageEncoding.analyze("a".repeat(307)).segments());
+    }
+
+    @Test
+    void extendedCharactersCostTwoSeptets() {
+        MessageEncoding.Info info = MessageEncoding.analyze("€".repeat(80));
+        assertEquals(MessageEncoding.GSM_7, info.encoding());
+        assertEquals(160, info.units());
+        assertEquals(1, info.segments());
+
+        assertEquals(2, MessageEncoding.analyze("€".repeat(80) + "a").segments());
+        assertEquals(4, MessageEncoding.analyze("{}").units());
+    }
+
+    @Test
+    void oneNonGsmCharacterSwitchesToUcs2() {
+        MessageEncoding.Info info = MessageEncoding.analyze("It’s fine");
+        assertEquals(MessageEncoding.UCS_2, info.encoding());
+        assertEquals(9, info.units());
+    }
+
+    @Test
+    void ucs2SegmentBoundariesCountUtf16Units() {
+        // the emoji is a surrogate pair: two units
+        assertEquals(70, MessageEncoding.analyze("a".repeat(68) + "😀").units());
+        assertEquals(1, MessageEncoding.analyze("a".repeat(68) + "😀").segments());
+        assertEquals(2, MessageEncoding.analyze("a".repeat(69) + "😀").segments());
+        assertEquals(2, MessageEncoding.analyze("é".repeat(133) + "ā").segments());
+        assertEquals(3, MessageEncoding.analyze("é".repeat(134) + "ā").segments());
+    }
+
+    @Test
+    void compactRewritesTypographyAndDropsEmoji() {
+        String out = MessageEncoding.compact("🚇 “NEL” – it’s delayed…");
+        assertEquals("\"NEL\" - it's delayed...", out);
+        assertEquals(MessageEncoding.GSM_7, MessageEncoding.analyze(out).encoding());
+    }
+
+    @Test
+    void compactCollapsesWhitespace() {
+        assertEquals("a b\nc", MessageEncoding.compact(" a \t b \n c "));
+    }
+
+    @Test
+    void compactLeavesShortGsmTextAlone() {
+        assertEquals("NEL delay", MessageEncoding.compact("NEL delay"));
+    }
+
+    @Test
+    void compactTruncatesToOneSegment() {
+        String out = MessageEncoding.compact("a".repeat(200));
+        assertEquals("a".repeat(157) + "...", out);
+        assertEquals(1, MessageEncoding.analyze(out).segments());
+    }
+
+    @Test
+    void compactDoesNotSplitAnExtendedCharacterAtTheCut() {
+        // the euro sign would need septets 157-158, one past the room left for "..."
+        String out = MessageEncoding.compact("a".repeat(156) + "€" + "a".repeat(10));
+        assertEquals("a".repeat(156) + "...", out);
+        assertTrue(MessageEncoding.analyze(out).units() <= 160);
+    }
+}
@@ -0,0 +1,143 @@
+package com.lta.whatsapp.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TwilioCircuitBreakerTests {
+
+    private static final long FAST = 1_000_000;        // 1 ms
+    private static final long SLOW = 200_000_000;      // 200 ms, over the 100 ms slow-call limit
+
+    // window 10, min 4 calls, 50% failures or 80% slow calls open it, 3 half-open trials
+    private static TwilioCircuitBreaker breaker(long openSeconds) {
+        return new TwilioCircuitBreaker(10, 4, 0.5, 0.8, 100, openSeconds, 3);
+    }
+
+    private static void trip(TwilioCircuitBreaker b) {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(b.tryAcquire());
+            b.record(false, FAST);
+        }
+    }
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        TwilioCircuitBreaker b = breaker(60);
+        for (int i = 0; i < 3; i++) b.record(false, FAST);
+        assertEquals(TwilioCircuitBreaker.State.CLOSED, b.getState());
+        assertTrue(b.tryAcquire());
+    }
+
+    @Test
+    void opensOnFailureRateAndFailsFast() {
+        TwilioCircuitBreaker b = breaker(60);
+        b.record(true, FAST);
+        b.record(true, FAST);
+        b.record(false, FAST);
+        assertEquals(TwilioCircuitBreaker.State.CLOSED, b.getState());
+        b.record(false, FAST);
+
+        assertEquals(TwilioCircuitBreaker.State.OPEN, b.getState());
+        assertFalse(b.tryAcquire());
+    }
+
+    @Test
+    void opensOnSlowCallRate() {
+        TwilioCircuitBreaker b = breaker(60);
+        for (int i = 0; i < 4; i++) b.record(true, SLOW);
+        assertEquals(TwilioCircuitBreaker.State.OPEN, b.getState());
+    }
+
+    @Test
+    void oldCallsRollOutOfTheWindow() {
+        TwilioCircuitBreaker b = new TwilioCircuitBreaker(4, 4, 0.5, 0.8, 100, 60, 3);
+        b.record(false, FAST);
+        for (int i = 0; i < 4; i++) b.record(true, FAST);
+        // the first failure has been overwritten: 1 of 4 failed
+        b.record(false, FAST);
+        assertEquals(TwilioCircuitBreaker.State.CLOSED, b.getState());
+    }
+
+    @Test
+    void halfOpenClosesAfterSuccessfulTrials() {
+        TwilioCircuitBreaker b = breaker(0);
+        AtomicInteger closed = new AtomicInteger();
+        b.onClose(closed::incrementAndGet);
+        trip(b);
+
+        // open period is over: the next calls are trials
+        for (int i = 0; i < 3; i++) {
+            assertTrue(b.tryAcquire());
+            assertEquals(TwilioCircuitBreaker.State.HALF_OPEN, b.getState());
+            b.record(true, FAST);
+        }
+        assertEquals(TwilioCircuitBreaker.State.CLOSED, b.getState());
+        assertEquals(1, closed.get());
+    }
+
+    @Test
+    void failedOrSlowTrialReopens() {
+        TwilioCircuitBreaker b = breaker(60);
+        trip(b);
+        b.probeSucceeded(FAST);
+        assertEquals(TwilioCircuitBreaker.State.HALF_OPEN, b.getState());
+
+        assertTrue(b.tryAcquire());
+        b.record(true, SLOW);
+        assertEquals(TwilioCircuitBreaker.State.OPEN, b.getState());
+        assertFalse(b.tryAcquire());
+    }
+
+    @Test
+    void successfulProbesCloseTheCircuitWithoutTraffic() {
+        TwilioCircuitBreaker b = breaker(60);
+        AtomicInteger closed = new AtomicInteger();
+        b.onClose(closed::incrementAndGet);
+        trip(b);
+
+        b.probeSucceeded(FAST);
+        b.probeSucceeded(FAST);
+        assertEquals(TwilioCircuitBreaker.State.HALF_OPEN, b.getState());
+        assertEquals(0, closed.get());
+
+        b.probeSucceeded(FAST);
+        assertEquals(TwilioCircuitBreaker.State.CLOSED, b.getState());
+        assertEquals(1, closed.get());
+
+        // a probe after closing is a no-op
+        b.probeSucceeded(FAST);
+        assertEquals(1, closed.get());
+    }
+
+    @Test
+    void probeAndRealTrialsShareTheTrialBudget() {
+        TwilioCircuitBreaker b = breaker(60);
+        trip(b);
+        b.probeSucceeded(FAST);
+
+        assertTrue(b.tryAcquire());
+        assertTrue(b.tryAcquire());
+        // three trials started (one probe, two calls): the rest wait for their results
+        assertFalse(b.tryAcquire());
+
+        b.record(true, FAST);
+        b.record(true, FAST);
+        assertEquals(TwilioCircuitBreaker.State.CLOSED, b.getState());
+    }
+
+    @Test
+    void trialsThatNeverReportBackAreReset() {
+        TwilioCircuitBreaker b = breaker(0);
+        trip(b);
+        for (int i = 0; i < 3; i++) assertTrue(b.tryAcquire());
+
+        // none of the three recorded a result; with a zero open period a fresh round starts at once
+        assertTrue(b.tryAcquire());
+        assertEquals(TwilioCircuitBreaker.State.HALF_OPEN, b.getState());
+    }
+}